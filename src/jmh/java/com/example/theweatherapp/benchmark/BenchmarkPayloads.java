@@ -0,0 +1,40 @@
+package com.example.theweatherapp.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+final class BenchmarkPayloads {
+
+    private BenchmarkPayloads() {
+    }
+
+    /**
+     * Mapper configured the way Spring Boot configures the one used by RestTemplate and MVC.
+     */
+    static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    static byte[] dailyPayload() {
+        return resource("open-meteo/daily.json");
+    }
+
+    static byte[] hourlyPayload() {
+        return resource("open-meteo/hourly.json");
+    }
+
+    private static byte[] resource(String path) {
+        try (InputStream in = BenchmarkPayloads.class.getResourceAsStream("/" + path)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing " + path + " test resource");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
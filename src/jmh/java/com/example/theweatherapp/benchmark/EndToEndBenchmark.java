@@ -0,0 +1,93 @@
+package com.example.theweatherapp.benchmark;
+
+import com.example.theweatherapp.TheWeatherAppApplication;
+import com.example.theweatherapp.stub.OpenMeteoStubServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full request path over HTTP: embedded Tomcat, controller, service, cache and the pooled upstream
+ * client talking to a local {@link OpenMeteoStubServer}. With {@code cacheTtl=PT0S} every request
+ * goes upstream.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+    @Param({"PT30M", "PT0S"})
+    public String cacheTtl;
+
+    @Param({"true", "false"})
+    public String virtualThreads;
+
+    private OpenMeteoStubServer stub;
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private HttpRequest dailyRequest;
+    private HttpRequest summaryRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stub = OpenMeteoStubServer.start();
+        context = new SpringApplicationBuilder(TheWeatherAppApplication.class).run(
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--open-meteo.api.url=" + stub.url(),
+                "--forecast.cache.ttl=" + cacheTtl,
+                "--forecast.store.type=none",
+                "--spring.threads.virtual.enabled=" + virtualThreads);
+        String baseUrl = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port");
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        dailyRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/api/forecast/daily?latitude=52.2297&longitude=21.0122")).build();
+        summaryRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/api/forecast/summary?latitude=52.2297&longitude=21.0122")).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        httpClient.close();
+        context.close();
+        stub.close();
+    }
+
+    @Benchmark
+    public byte[] dailyForecast() throws IOException, InterruptedException {
+        return send(dailyRequest);
+    }
+
+    @Benchmark
+    public byte[] weeklySummary() throws IOException, InterruptedException {
+        return send(summaryRequest);
+    }
+
+    private byte[] send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.theweatherapp.benchmark;
+
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.ForecastStore;
+import com.example.theweatherapp.client.OpenMeteoClient;
+import com.example.theweatherapp.client.RateLimitBudget;
+import com.example.theweatherapp.dto.DailyForecastDto;
+import com.example.theweatherapp.dto.WeeklyForecastSummaryDto;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import com.example.theweatherapp.service.WeatherForecastService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WeatherForecastService#getDailyForecast} and {@link WeatherForecastService#getWeeklySummary}
+ * on a warm cache, i.e. the cache lookup plus the DTO computation of every cached request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ForecastComputationBenchmark {
+
+    private WeatherForecastService weatherForecastService;
+
+    @Setup
+    public void setUp() throws IOException {
+        WeatherApiResponse response = BenchmarkPayloads.objectMapper()
+                .readValue(BenchmarkPayloads.dailyPayload(), WeatherApiResponse.class);
+        OpenMeteoClient openMeteoClient = new OpenMeteoClient(null, null, null, null, null, null) {
+            @Override
+            public WeatherApiResponse fetchDaily(double lat, double lon, RateLimitBudget.Priority priority) {
+                return response;
+            }
+        };
+        ForecastCache forecastCache = new ForecastCache(Duration.ofDays(1), 100, Duration.ofSeconds(10), ForecastStore.NONE, Clock.systemUTC());
+        weatherForecastService = new WeatherForecastService(openMeteoClient, forecastCache, Runnable::run);
+        ReflectionTestUtils.setField(weatherForecastService, "gridSize", 0.01);
+        ReflectionTestUtils.setField(weatherForecastService, "maxLocationsPerRequest", 100);
+        ReflectionTestUtils.setField(weatherForecastService, "staleWhileRevalidate", Duration.ZERO);
+        ReflectionTestUtils.setField(weatherForecastService, "staleIfError", Duration.ZERO);
+    }
+
+    @Benchmark
+    public List<DailyForecastDto> dailyForecast() {
+        return weatherForecastService.getDailyForecast(52.2297, 21.0122).forecast();
+    }
+
+    @Benchmark
+    public WeeklyForecastSummaryDto weeklySummary() {
+        return weatherForecastService.getWeeklySummary(52.2297, 21.0122).forecast();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.theweatherapp.benchmark;
+
+import com.example.theweatherapp.util.DecimalRounding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rounding cost of one request: 7 generated-energy values for {@code /daily} and 2 averages for
+ * {@code /summary}, with the previous BigDecimal path and {@link DecimalRounding}. Run with
+ * {@code -prof gc} to see the allocation difference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoundingBenchmark {
+
+    private final double[] energies = new double[7];
+    private final double[] averages = new double[2];
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < energies.length; i++) {
+            energies[i] = 2.5 * (random.nextDouble(0, 50_000) / 3600) * 0.2;
+        }
+        averages[0] = random.nextDouble(980, 1040);
+        averages[1] = random.nextDouble(0, 50_000);
+    }
+
+    @Benchmark
+    public void dailyRequestBigDecimal(Blackhole blackhole) {
+        for (double energy : energies) {
+            blackhole.consume(BigDecimal.valueOf(energy).setScale(2, RoundingMode.HALF_UP).doubleValue());
+        }
+    }
+
+    @Benchmark
+    public void dailyRequestPrimitive(Blackhole blackhole) {
+        for (double energy : energies) {
+            blackhole.consume(DecimalRounding.halfUp(energy, 2));
+        }
+    }
+
+    @Benchmark
+    public void summaryRequestBigDecimal(Blackhole blackhole) {
+        for (double average : averages) {
+            blackhole.consume(BigDecimal.valueOf(average).setScale(1, RoundingMode.HALF_UP).doubleValue());
+        }
+    }
+
+    @Benchmark
+    public void summaryRequestPrimitive(Blackhole blackhole) {
+        for (double average : averages) {
+            blackhole.consume(DecimalRounding.halfUp(average, 1));
+        }
+    }
+}
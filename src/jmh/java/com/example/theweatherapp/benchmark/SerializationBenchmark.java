@@ -0,0 +1,91 @@
+package com.example.theweatherapp.benchmark;
+
+import com.example.theweatherapp.cache.RepresentationCache;
+import com.example.theweatherapp.dto.DailyForecastDto;
+import com.example.theweatherapp.dto.WeeklyForecastSummaryDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding of the response bodies of {@code /daily} and {@code /summary} as Jackson JSON, with and
+ * without gzip, against serving the precomputed bytes from the {@link RepresentationCache}. Sizes
+ * and the CBOR layout are compared in {@link WireSizeBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private RepresentationCache representationCache;
+    private List<DailyForecastDto> dailyForecast;
+    private WeeklyForecastSummaryDto weeklySummary;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = BenchmarkPayloads.objectMapper();
+        dailyForecast = List.of(
+                new DailyForecastDto("2024-01-15", 3, -3.1, 1.4, 0.0),
+                new DailyForecastDto("2024-01-16", 71, -4.6, 0.2, 0.21),
+                new DailyForecastDto("2024-01-17", 73, -6.2, -1.8, 1.2),
+                new DailyForecastDto("2024-01-18", 61, -1.9, 3.6, 0.0),
+                new DailyForecastDto("2024-01-19", 3, 0.4, 4.1, 1.53),
+                new DailyForecastDto("2024-01-20", 2, -0.8, 2.7, 2.49),
+                new DailyForecastDto("2024-01-21", 80, 1.2, 5.3, 0.74)
+        );
+        weeklySummary = new WeeklyForecastSummaryDto(1006.5, 6341.9, -6.2, 5.3, "Z opadami");
+        representationCache = new RepresentationCache("benchmark", DataSize.ofMegabytes(1));
+        byte[] dailyJson = serializeDailyForecast();
+        representationCache.get("daily", () -> dailyJson);
+    }
+
+    @Benchmark
+    public byte[] serializeDailyForecast() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(dailyForecast);
+    }
+
+    @Benchmark
+    public byte[] serializeDailyForecastGzip() throws IOException {
+        return gzip(objectMapper.writeValueAsBytes(dailyForecast));
+    }
+
+    @Benchmark
+    public byte[] precomputedDailyForecast() {
+        return representationCache.get("daily", () -> {
+            throw new IllegalStateException("Representation should be cached");
+        });
+    }
+
+    @Benchmark
+    public byte[] serializeWeeklySummary() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(weeklySummary);
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        return compressed.toByteArray();
+    }
+}
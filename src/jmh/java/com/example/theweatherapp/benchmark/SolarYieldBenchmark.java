@@ -0,0 +1,57 @@
+package com.example.theweatherapp.benchmark;
+
+import com.example.theweatherapp.dto.SolarYieldDto;
+import com.example.theweatherapp.model.HourlyData;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import com.example.theweatherapp.service.SolarYieldAggregator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the recorded 168-hour Open-Meteo payload and aggregation of it into a solar yield estimate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SolarYieldBenchmark {
+
+    @Param({"false", "true"})
+    public boolean includeHours;
+
+    private ObjectMapper objectMapper;
+    private byte[] payload;
+    private HourlyData hourlyData;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = BenchmarkPayloads.objectMapper();
+        payload = BenchmarkPayloads.hourlyPayload();
+        hourlyData = objectMapper.readValue(payload, WeatherApiResponse.class).hourlyData();
+    }
+
+    @Benchmark
+    public WeatherApiResponse decodeHourlyPayload() throws IOException {
+        return objectMapper.readValue(payload, WeatherApiResponse.class);
+    }
+
+    @Benchmark
+    public SolarYieldDto aggregate() {
+        return SolarYieldAggregator.aggregate(hourlyData, 2.5, 0.8, includeHours);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.theweatherapp.benchmark;
+
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.ForecastStore;
+import com.example.theweatherapp.cache.RepresentationCache;
+import com.example.theweatherapp.client.OpenMeteoClient;
+import com.example.theweatherapp.client.RateLimitBudget;
+import com.example.theweatherapp.controller.ForecastFormat;
+import com.example.theweatherapp.controller.ForecastResponseEncoder;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import com.example.theweatherapp.service.ForecastResult;
+import com.example.theweatherapp.service.SolarYieldAggregator;
+import com.example.theweatherapp.service.WeatherForecastService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes on the wire and encoding time of every response body in every format the endpoints
+ * offer, encoded by {@link ForecastResponseEncoder} from the recorded Open-Meteo payloads without
+ * the representation cache. The size of each variant, and its share of the plain JSON size, is
+ * printed during setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireSizeBenchmark {
+
+    @Param({"daily", "summary", "solar", "solar-hourly"})
+    private String body;
+
+    @Param({"JSON", "CBOR"})
+    private ForecastFormat format;
+
+    @Param({"false", "true"})
+    private boolean gzip;
+
+    private ForecastResponseEncoder responseEncoder;
+    private ForecastResult<?> result;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = BenchmarkPayloads.objectMapper();
+        responseEncoder = new ForecastResponseEncoder(objectMapper, true, 0);
+        result = forecast(body, objectMapper);
+        int size = encode().length;
+        int jsonSize = responseEncoder.encode(RepresentationCache.NONE, body, result, ForecastFormat.JSON, false).body().length;
+        System.out.printf(Locale.ROOT, "%nBytes on the wire for %s as %s%s: %d (%.0f%% of JSON)%n",
+                body, format, gzip ? "+gzip" : "", size, 100.0 * size / jsonSize);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return responseEncoder.encode(RepresentationCache.NONE, body, result, format, gzip).body();
+    }
+
+    private static ForecastResult<?> forecast(String body, ObjectMapper objectMapper) throws IOException {
+        Object forecast = switch (body) {
+            case "daily" -> weatherForecastService(objectMapper).getDailyForecast(52.2297, 21.0122).forecast();
+            case "summary" -> weatherForecastService(objectMapper).getWeeklySummary(52.2297, 21.0122).forecast();
+            case "solar", "solar-hourly" -> SolarYieldAggregator.aggregate(
+                    objectMapper.readValue(BenchmarkPayloads.hourlyPayload(), WeatherApiResponse.class).hourlyData(),
+                    2.5, 0.8, body.equals("solar-hourly"));
+            default -> throw new IllegalArgumentException("Unknown body " + body);
+        };
+        Instant now = Instant.now();
+        return new ForecastResult<>(() -> forecast, body, now, now.plus(Duration.ofMinutes(30)), false);
+    }
+
+    private static WeatherForecastService weatherForecastService(ObjectMapper objectMapper) throws IOException {
+        WeatherApiResponse response = objectMapper.readValue(BenchmarkPayloads.dailyPayload(), WeatherApiResponse.class);
+        OpenMeteoClient openMeteoClient = new OpenMeteoClient(null, null, null, null, null, null) {
+            @Override
+            public WeatherApiResponse fetchDaily(double lat, double lon, RateLimitBudget.Priority priority) {
+                return response;
+            }
+        };
+        ForecastCache forecastCache = new ForecastCache(Duration.ofDays(1), 100, Duration.ofSeconds(10), ForecastStore.NONE, Clock.systemUTC());
+        WeatherForecastService weatherForecastService = new WeatherForecastService(openMeteoClient, forecastCache, Runnable::run);
+        ReflectionTestUtils.setField(weatherForecastService, "gridSize", 0.01);
+        ReflectionTestUtils.setField(weatherForecastService, "staleWhileRevalidate", Duration.ZERO);
+        ReflectionTestUtils.setField(weatherForecastService, "staleIfError", Duration.ZERO);
+        return weatherForecastService;
+    }
+}
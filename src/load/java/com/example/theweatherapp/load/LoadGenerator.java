@@ -0,0 +1,170 @@
+package com.example.theweatherapp.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+/**
+ * Drives {@code /api/forecast/*} at a constant arrival rate. Requests are sent asynchronously on
+ * schedule whether or not earlier ones completed, and latency is measured
+ * from the time a request was due rather than from when it was sent, so a stalled server shows up
+ * in the percentiles instead of silently lowering the rate.
+ * <p>
+ * Each request picks an endpoint from {@code endpoints} and a location from a fixed pool of
+ * {@code locations} random points over Europe, so the pool size sets how often the forecast cache
+ * can hit.
+ */
+public class LoadGenerator implements AutoCloseable {
+
+    /**
+     * What to run: {@code rps} requests per second against {@code baseUri} for {@code duration},
+     * after a {@code warmup} whose requests are not recorded.
+     */
+    public record Settings(URI baseUri,
+                           int rps,
+                           Duration duration,
+                           Duration warmup,
+                           List<String> endpoints,
+                           int locations,
+                           Duration timeout,
+                           long seed) {
+
+        /**
+         * Reads {@code rps}, {@code duration}, {@code warmup}, {@code endpoints} (comma-separated:
+         * daily, summary, solar), {@code locations}, {@code timeout} and {@code seed}.
+         */
+        public static Settings from(URI baseUri, Map<String, String> settings) {
+            return new Settings(baseUri,
+                    Integer.parseInt(settings.getOrDefault("rps", "200")),
+                    Duration.parse(settings.getOrDefault("duration", "PT30S")),
+                    Duration.parse(settings.getOrDefault("warmup", "PT5S")),
+                    List.of(settings.getOrDefault("endpoints", "daily,summary").split(",")),
+                    Integer.parseInt(settings.getOrDefault("locations", "500")),
+                    Duration.parse(settings.getOrDefault("timeout", "PT10S")),
+                    Long.parseLong(settings.getOrDefault("seed", "42")));
+        }
+    }
+
+    /**
+     * Outcome of the measured part of a run. {@code statuses} counts responses by HTTP status, with
+     * {@code timeout} and {@code io_error} for requests that got none.
+     */
+    public record Report(Settings settings, Duration elapsed, long sent, Map<String, Long> statuses, Histogram latencyMicros) {
+
+        public long completed() {
+            return statuses.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        public double throughput() {
+            return completed() / (elapsed.toNanos() / 1e9);
+        }
+
+        public String format() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format(Locale.ROOT, "Target          %d req/s for %s (%s warmup) against %s%n",
+                    settings.rps(), settings.duration(), settings.warmup(), settings.baseUri()));
+            text.append(String.format(Locale.ROOT, "Requests        %d sent, %d completed in %.1f s%n",
+                    sent, completed(), elapsed.toNanos() / 1e9));
+            text.append(String.format(Locale.ROOT, "Throughput      %.1f req/s%n", throughput()));
+            text.append("Responses       ").append(statuses).append(System.lineSeparator());
+            text.append(String.format(Locale.ROOT, "Latency (ms)    p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                    percentile(50), percentile(90), percentile(99), percentile(99.9), latencyMicros.getMaxValue() / 1000.0));
+            return text.toString();
+        }
+
+        private double percentile(double percentile) {
+            return latencyMicros.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+
+    private static final double MIN_LAT = 36.0;
+    private static final double MAX_LAT = 70.0;
+    private static final double MIN_LON = -10.0;
+    private static final double MAX_LON = 30.0;
+
+    private final Settings settings;
+    private final HttpClient httpClient;
+    private final List<String> paths;
+
+    public LoadGenerator(Settings settings) {
+        this.settings = settings;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(settings.timeout())
+                .build();
+        Random random = new Random(settings.seed());
+        this.paths = IntStream.range(0, settings.locations())
+                .mapToObj(i -> String.format(Locale.ROOT, "?latitude=%.4f&longitude=%.4f",
+                        MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT),
+                        MIN_LON + random.nextDouble() * (MAX_LON - MIN_LON)))
+                .toList();
+    }
+
+    public Report run() {
+        Histogram latencyMicros = new ConcurrentHistogram(3);
+        Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+        Random random = new Random(settings.seed());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / settings.rps();
+        long start = System.nanoTime();
+        long measureFrom = start + settings.warmup().toNanos();
+        long end = measureFrom + settings.duration().toNanos();
+        long sent = 0;
+        List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+        for (long due = start; due < end; due += intervalNanos) {
+            LockSupport.parkNanos(due - System.nanoTime());
+            URI uri = settings.baseUri().resolve("/api/forecast/"
+                    + settings.endpoints().get(random.nextInt(settings.endpoints().size()))
+                    + paths.get(random.nextInt(paths.size())));
+            CompletableFuture<String> outcome = send(uri);
+            if (due >= measureFrom) {
+                sent++;
+                long dueAt = due;
+                inFlight.add(outcome.thenAccept(status -> {
+                    latencyMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dueAt));
+                    statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+                }));
+            }
+        }
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).join();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - measureFrom);
+        Map<String, Long> counts = new TreeMap<>();
+        statuses.forEach((status, count) -> counts.put(status, count.sum()));
+        return new Report(settings, elapsed, sent, counts, latencyMicros);
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+    }
+
+    private CompletableFuture<String> send(URI uri) {
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(settings.timeout()).build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    if (error == null) {
+                        return String.valueOf(response.statusCode());
+                    }
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    return cause instanceof HttpTimeoutException ? "timeout" : "io_error";
+                });
+    }
+}
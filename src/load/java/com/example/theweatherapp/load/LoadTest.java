@@ -0,0 +1,101 @@
+package com.example.theweatherapp.load;
+
+import com.example.theweatherapp.TheWeatherAppApplication;
+import com.example.theweatherapp.stub.OpenMeteoStubServer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test scenario. Unless {@code --target} points it at a running instance, it starts a local
+ * {@link OpenMeteoStubServer} and the application wired to it in this JVM, drives the application
+ * with a {@link LoadGenerator} and prints the report along with how many calls reached the stub.
+ * <p>
+ * Arguments are {@code --key=value}: the {@link LoadGenerator.Settings#from generator settings},
+ * {@code stub.}-prefixed {@link OpenMeteoStubServer.Behavior#from stub behavior} plus
+ * {@code stub.outage-after} and {@code stub.outage-duration} to make every upstream call fail for a
+ * while, and anything else as an application property, e.g.
+ * {@code --rps=500 --stub.latency-median=PT0.08S --stub.latency-p99=PT0.5S --forecast.cache.ttl=PT0S}.
+ */
+public final class LoadTest {
+
+    private static final Set<String> GENERATOR_SETTINGS =
+            Set.of("target", "rps", "duration", "warmup", "endpoints", "locations", "timeout", "seed");
+    private static final String STUB_PREFIX = "stub.";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> generatorSettings = new HashMap<>();
+        Map<String, String> stubSettings = new HashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        OpenMeteoStubServer.parseArguments(args).forEach((key, value) -> {
+            if (GENERATOR_SETTINGS.contains(key)) {
+                generatorSettings.put(key, value);
+            } else if (key.startsWith(STUB_PREFIX)) {
+                stubSettings.put(key.substring(STUB_PREFIX.length()), value);
+            } else {
+                applicationArgs.add("--" + key + "=" + value);
+            }
+        });
+
+        if (generatorSettings.containsKey("target")) {
+            run(LoadGenerator.Settings.from(URI.create(generatorSettings.get("target")), generatorSettings));
+            return;
+        }
+        OpenMeteoStubServer.Behavior behavior = OpenMeteoStubServer.Behavior.from(stubSettings);
+        try (OpenMeteoStubServer stub = OpenMeteoStubServer.start(0, behavior);
+             ConfigurableApplicationContext context = startApplication(stub, applicationArgs)) {
+            scheduleOutage(stub, behavior, stubSettings);
+            URI baseUri = URI.create("http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port"));
+            run(LoadGenerator.Settings.from(baseUri, generatorSettings));
+            System.out.printf("Upstream calls  %d (%d injected errors), stub behavior %s%n",
+                    stub.requestCount(), stub.injectedErrorCount(), behavior);
+        }
+    }
+
+    private static void run(LoadGenerator.Settings settings) {
+        try (LoadGenerator generator = new LoadGenerator(settings)) {
+            System.out.print(generator.run().format());
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(OpenMeteoStubServer stub, List<String> applicationArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--open-meteo.api.url=" + stub.url(),
+                "--forecast.store.type=none"));
+        args.addAll(applicationArgs);
+        return new SpringApplicationBuilder(TheWeatherAppApplication.class).run(args.toArray(String[]::new));
+    }
+
+    /**
+     * Counts the outage from the start of the run, warmup included.
+     */
+    private static void scheduleOutage(OpenMeteoStubServer stub, OpenMeteoStubServer.Behavior behavior,
+                                       Map<String, String> stubSettings) {
+        if (!stubSettings.containsKey("outage-after")) {
+            return;
+        }
+        Duration after = Duration.parse(stubSettings.get("outage-after"));
+        Duration duration = Duration.parse(stubSettings.getOrDefault("outage-duration", "PT10S"));
+        OpenMeteoStubServer.Behavior outage = new OpenMeteoStubServer.Behavior(behavior.latencyMedian(), behavior.latencyP99(),
+                1, behavior.errorStatus(), 0, Duration.ZERO);
+        CompletableFuture.runAsync(() -> stub.setBehavior(outage),
+                CompletableFuture.delayedExecutor(after.toMillis(), TimeUnit.MILLISECONDS));
+        CompletableFuture.runAsync(() -> stub.setBehavior(behavior),
+                CompletableFuture.delayedExecutor(after.plus(duration).toMillis(), TimeUnit.MILLISECONDS));
+    }
+}
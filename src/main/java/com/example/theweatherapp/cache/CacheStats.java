@@ -0,0 +1,9 @@
+package com.example.theweatherapp.cache;
+
+public record CacheStats(
+        long hits,
+        long misses,
+        long evictions,
+        int size
+) {
+}
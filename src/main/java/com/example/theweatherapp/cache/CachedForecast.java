@@ -0,0 +1,25 @@
+package com.example.theweatherapp.cache;
+
+import com.example.theweatherapp.model.WeatherApiResponse;
+
+import java.time.Instant;
+
+public record CachedForecast(
+        GridCell cell,
+        WeatherApiResponse response,
+        Instant fetchedAt,
+        Instant expiresAt
+) {
+
+    public boolean isExpired(Instant now) {
+        return !now.isBefore(expiresAt);
+    }
+
+    /**
+     * Identifies the upstream fetch this entry holds: the same cell fetched at the same instant
+     * always has the same data.
+     */
+    public String version() {
+        return cell.latIndex() + "." + cell.lonIndex() + "-" + Long.toHexString(fetchedAt.toEpochMilli());
+    }
+}
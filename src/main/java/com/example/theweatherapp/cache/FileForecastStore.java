@@ -0,0 +1,270 @@
+package com.example.theweatherapp.cache;
+
+import com.example.theweatherapp.model.WeatherApiResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of fetched forecasts, so a restarted instance can serve warm data without going
+ * upstream. Each save appends a record; the newest record of a cell wins.
+ * <p>
+ * Record layout: {@code magic:int, bodyLength:int, crc32:int, body}, where the body is
+ * {@code latIndex:int, lonIndex:int, gridSize:double, fetchedAt:long, expiresAt:long, payload}
+ * and the payload is the JSON-encoded {@link WeatherApiResponse}.
+ * <p>
+ * The file is opened and indexed lazily on first use; payloads are decoded only when a cell is
+ * actually requested. A torn record at the end of the file (e.g. after a crash) is truncated.
+ * When dead records outweigh live ones the log is compacted into a new file, dropping entries
+ * that expired more than {@code retention} ago and so can no longer be served stale.
+ * <p>
+ * Loads read the file concurrently under a shared lock and decode outside it; saves and
+ * compaction take the lock exclusively.
+ */
+@Slf4j
+public class FileForecastStore implements ForecastStore, Closeable {
+
+    private static final int MAGIC = 0x57464331;
+    private static final int RECORD_HEADER_BYTES = 12;
+    private static final int BODY_HEADER_BYTES = 4 + 4 + 8 + 8 + 8;
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final Duration retention;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<GridCell, IndexEntry> index = new HashMap<>();
+    private volatile FileChannel channel;
+    private long liveBytes;
+
+    public FileForecastStore(Path path, ObjectMapper objectMapper, Clock clock, Duration retention) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.retention = retention;
+    }
+
+    @Override
+    public Optional<CachedForecast> load(GridCell cell) {
+        try {
+            ensureOpen();
+            IndexEntry entry;
+            byte[] payload;
+            lock.readLock().lock();
+            try {
+                entry = index.get(cell);
+                if (entry == null || channel == null) {
+                    return Optional.empty();
+                }
+                ByteBuffer body = ByteBuffer.allocate(entry.bodyLength());
+                readFully(channel, body, entry.offset() + RECORD_HEADER_BYTES);
+                body.flip();
+                body.position(BODY_HEADER_BYTES);
+                payload = new byte[body.remaining()];
+                body.get(payload);
+            } finally {
+                lock.readLock().unlock();
+            }
+            WeatherApiResponse response = objectMapper.readValue(payload, WeatherApiResponse.class);
+            return Optional.of(new CachedForecast(cell, response,
+                    Instant.ofEpochMilli(entry.fetchedAt()), Instant.ofEpochMilli(entry.expiresAt())));
+        } catch (IOException e) {
+            log.warn("Could not read cached forecast for {} from {}", cell, path, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void save(CachedForecast forecast) {
+        try {
+            ensureOpen();
+            byte[] payload = objectMapper.writeValueAsBytes(forecast.response());
+            ByteBuffer record = encode(forecast.cell(), forecast.fetchedAt().toEpochMilli(),
+                    forecast.expiresAt().toEpochMilli(), payload);
+            lock.writeLock().lock();
+            try {
+                long offset = channel.size();
+                writeFully(channel, record, offset);
+                IndexEntry previous = index.put(forecast.cell(), new IndexEntry(offset, record.capacity() - RECORD_HEADER_BYTES,
+                        forecast.fetchedAt().toEpochMilli(), forecast.expiresAt().toEpochMilli()));
+                liveBytes += record.capacity() - (previous != null ? previous.recordLength() : 0);
+                if (channel.size() > MIN_COMPACTION_BYTES && channel.size() > 2 * liveBytes) {
+                    compact();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            log.warn("Could not persist forecast for {} to {}", forecast.cell(), path, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel != null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                return;
+            }
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            rebuildIndex();
+            log.info("Opened forecast store {} with {} cells", path, index.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuildIndex() throws IOException {
+        index.clear();
+        liveBytes = 0;
+        long size = channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (offset + RECORD_HEADER_BYTES <= size) {
+            header.clear();
+            readFully(channel, header, offset);
+            header.flip();
+            int magic = header.getInt();
+            int bodyLength = header.getInt();
+            int crc = header.getInt();
+            if (magic != MAGIC || bodyLength < BODY_HEADER_BYTES || offset + RECORD_HEADER_BYTES + bodyLength > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(bodyLength);
+            readFully(channel, body, offset + RECORD_HEADER_BYTES);
+            body.flip();
+            if (crc32(body) != crc) {
+                break;
+            }
+            GridCell cell = new GridCell(body.getInt(), body.getInt(), body.getDouble());
+            IndexEntry entry = new IndexEntry(offset, bodyLength, body.getLong(), body.getLong());
+            IndexEntry previous = index.put(cell, entry);
+            liveBytes += entry.recordLength() - (previous != null ? previous.recordLength() : 0);
+            offset += entry.recordLength();
+        }
+        if (offset < size) {
+            log.warn("Truncating {} bytes of incomplete records from {}", size - offset, path);
+            channel.truncate(offset);
+        }
+    }
+
+    private void compact() throws IOException {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        long keepExpiringAfter = clock.instant().minus(retention).toEpochMilli();
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = 0;
+            for (IndexEntry entry : index.values()) {
+                if (entry.expiresAt() <= keepExpiringAfter) {
+                    continue;
+                }
+                ByteBuffer record = ByteBuffer.allocate(entry.recordLength());
+                readFully(channel, record, entry.offset());
+                record.flip();
+                writeFully(target, record, position);
+                position += entry.recordLength();
+            }
+            target.force(true);
+        }
+        channel.close();
+        channel = null;
+        try {
+            replace(compacted, path);
+        } catch (IOException e) {
+            Files.deleteIfExists(compacted);
+            throw e;
+        } finally {
+            // Whether or not the compacted log took its place, continue on what is at path now
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            rebuildIndex();
+        }
+        log.info("Compacted forecast store {} to {} cells", path, index.size());
+    }
+
+    /**
+     * Moves the compacted log over the current one, atomically.
+     */
+    protected void replace(Path compacted, Path path) throws IOException {
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer encode(GridCell cell, long fetchedAt, long expiresAt, byte[] payload) {
+        ByteBuffer body = ByteBuffer.allocate(BODY_HEADER_BYTES + payload.length)
+                .putInt(cell.latIndex())
+                .putInt(cell.lonIndex())
+                .putDouble(cell.size())
+                .putLong(fetchedAt)
+                .putLong(expiresAt)
+                .put(payload)
+                .flip();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + body.remaining())
+                .putInt(MAGIC)
+                .putInt(body.remaining())
+                .putInt(crc32(body.duplicate()));
+        return record.put(body).flip();
+    }
+
+    private static int crc32(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of forecast store");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private record IndexEntry(long offset, int bodyLength, long fetchedAt, long expiresAt) {
+
+        int recordLength() {
+            return RECORD_HEADER_BYTES + bodyLength;
+        }
+    }
+}
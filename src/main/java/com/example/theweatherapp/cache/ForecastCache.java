@@ -0,0 +1,466 @@
+package com.example.theweatherapp.cache;
+
+import com.example.theweatherapp.exception.WeatherApiException;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * In-process forecast cache keyed on {@link GridCell}. Entries live for a fixed TTL and the
+ * least recently used entry is evicted once {@code maxEntries} is reached. Concurrent misses for
+ * the same cell are coalesced into a single upstream load. Misses consult the
+ * {@link ForecastStore} before going upstream, and every fetched forecast is saved to it.
+ * Reads are counted per cell so hot entries can be refreshed before they expire. Expired entries
+ * are kept until evicted so they can still be served stale through {@link #getIfStale}.
+ * Listeners are told about every forecast put into the cache, and cells can be watched so they are
+ * refreshed ahead of expiry even when nobody reads them. Entries are also indexed by location, so
+ * a request can be served from the nearest cached cell within a given distance.
+ * <p>
+ * With a store shared between instances the cache is their near-cache: upstream loads go through
+ * {@link ForecastStore#loadExclusively}, so one instance fetches a cell while the others pick its
+ * result up from the store, and an entry is dropped as soon as another instance saves a newer
+ * forecast of its cell.
+ */
+@Primary
+@Component
+public class ForecastCache implements MeterBinder {
+
+    /**
+     * About 11 km, so lookups within a few kilometres scan at most a handful of index buckets.
+     */
+    private static final double INDEX_BUCKET_DEGREES = 0.1;
+
+    private final String dataset;
+    private final Duration ttl;
+    private final int maxEntries;
+    private final Clock clock;
+    private final Map<GridCell, CachedForecast> entries;
+    private final SpatialIndex spatialIndex = new SpatialIndex(INDEX_BUCKET_DEGREES);
+    private final SingleFlight<GridCell, CachedForecast> singleFlight;
+    private final ForecastStore forecastStore;
+    private final Map<GridCell, AtomicLong> accessCounts = new ConcurrentHashMap<>();
+    private final Map<GridCell, Integer> watchers = new ConcurrentHashMap<>();
+    private final List<Consumer<CachedForecast>> updateListeners = new CopyOnWriteArrayList<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder nearbyHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder storeLoads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Autowired
+    public ForecastCache(@Value("${forecast.cache.ttl:PT30M}") Duration ttl,
+                         @Value("${forecast.cache.max-entries:10000}") int maxEntries,
+                         @Value("${forecast.cache.in-flight-timeout:PT10S}") Duration inFlightTimeout,
+                         ForecastStore forecastStore,
+                         Clock clock) {
+        this("daily", ttl, maxEntries, inFlightTimeout, forecastStore, clock);
+    }
+
+    /**
+     * Creates a cache for another upstream dataset; {@code dataset} tags its metrics.
+     */
+    public ForecastCache(String dataset,
+                         Duration ttl,
+                         int maxEntries,
+                         Duration inFlightTimeout,
+                         ForecastStore forecastStore,
+                         Clock clock) {
+        this.dataset = dataset;
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.singleFlight = new SingleFlight<>(inFlightTimeout);
+        this.forecastStore = forecastStore;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<GridCell, CachedForecast> eldest) {
+                if (size() > ForecastCache.this.maxEntries) {
+                    evictions.increment();
+                    accessCounts.remove(eldest.getKey());
+                    spatialIndex.remove(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+        forecastStore.addSaveListener(this::onSaved);
+    }
+
+    public CachedForecast get(GridCell cell, Supplier<WeatherApiResponse> loader) {
+        return get(cell, loader, true);
+    }
+
+    /**
+     * Like {@link #get(GridCell, Supplier)}; with {@code checkStore} false a miss goes straight to
+     * the loader, for callers that just found nothing fresh in the store through
+     * {@link #getIfStale}. A shared store is still checked under the cell's lock.
+     */
+    public CachedForecast get(GridCell cell, Supplier<WeatherApiResponse> loader, boolean checkStore) {
+        recordAccess(cell);
+        CachedForecast cached = getIfFresh(cell);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        return singleFlight.execute(cell, () -> {
+            CachedForecast loaded = getIfFresh(cell);
+            if (loaded == null && checkStore) {
+                loaded = loadFromStore(cell);
+            }
+            return loaded != null ? loaded : loadExclusively(cell, null, loader);
+        });
+    }
+
+    /**
+     * Loads several cells, sharing the single-flight slots of {@link #get} and {@link #refresh}:
+     * cells another caller is loading are waited for, and readers of the cells loaded here wait for
+     * this load. Cells still missing, after a look at the store unless {@code checkStore} is false,
+     * are handed to {@code loader} together, through {@link ForecastStore#loadAllExclusively}.
+     * {@code loader} returns the responses it got and records a failure for each other cell in
+     * {@code failures}. Returns the forecast of every cell that loaded; the exception of every other
+     * one is put into {@code failures}. Does not count as an access.
+     */
+    public Map<GridCell, CachedForecast> getAll(Collection<GridCell> cells,
+                                                Function<List<GridCell>, Map<GridCell, WeatherApiResponse>> loader,
+                                                Map<GridCell, RuntimeException> failures,
+                                                boolean checkStore) {
+        return singleFlight.executeAll(cells, claimed -> {
+            Map<GridCell, CompletableFuture<CachedForecast>> toLoad = new LinkedHashMap<>();
+            claimed.forEach((cell, future) -> {
+                CachedForecast loaded = getIfFresh(cell);
+                if (loaded == null && checkStore) {
+                    loaded = loadFromStore(cell);
+                }
+                if (loaded != null) {
+                    future.complete(loaded);
+                } else {
+                    toLoad.put(cell, future);
+                }
+            });
+            if (toLoad.isEmpty()) {
+                return;
+            }
+            Map<GridCell, CachedForecast> fetched = new HashMap<>();
+            Map<GridCell, CachedForecast> loaded = forecastStore.loadAllExclusively(toLoad.keySet(), toFetch -> {
+                loader.apply(toFetch).forEach((cell, response) -> fetched.put(cell, put(cell, response)));
+                return fetched;
+            });
+            toLoad.forEach((cell, future) -> {
+                CachedForecast cached = loaded.get(cell);
+                if (cached == null) {
+                    future.completeExceptionally(failures.getOrDefault(cell, new WeatherApiException("Error fetching weather data")));
+                    return;
+                }
+                if (cached != fetched.get(cell)) {
+                    installFromStore(cached);
+                }
+                future.complete(cached);
+            });
+        }, failures);
+    }
+
+    public CachedForecast getIfPresent(GridCell cell) {
+        recordAccess(cell);
+        CachedForecast cached = getIfFresh(cell);
+        if (cached == null) {
+            cached = loadFromStore(cell);
+        }
+        if (cached != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Returns the fresh in-memory entry whose grid point is closest to {@code lat}/{@code lon},
+     * if it is at most {@code radiusKm} away. The read is counted for the returned cell, as a hit
+     * when it is the requested cell and as a nearby hit otherwise. Returns {@code null}, counting
+     * nothing, when there is no such entry.
+     */
+    public CachedForecast getNearby(double lat, double lon, GridCell cell, double radiusKm) {
+        CachedForecast cached = getIfFresh(cell);
+        if (cached != null) {
+            recordAccess(cell);
+            hits.increment();
+            return cached;
+        }
+        synchronized (entries) {
+            cached = spatialIndex.nearest(lat, lon, radiusKm, clock.instant());
+            if (cached != null) {
+                entries.get(cached.cell());
+            }
+        }
+        if (cached != null) {
+            recordAccess(cached.cell());
+            nearbyHits.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Returns the entry for {@code cell}, from memory or the store, if it expired less than
+     * {@code maxStaleness} ago. Fresh, missing and older entries return {@code null}. A fresh
+     * forecast found in the store is cached, so the {@link #get} that usually follows finds it in
+     * memory; expired ones are not, so they never take the place of live entries.
+     */
+    public CachedForecast getIfStale(GridCell cell, Duration maxStaleness) {
+        CachedForecast cached;
+        synchronized (entries) {
+            cached = entries.get(cell);
+        }
+        if (cached == null) {
+            cached = readStore(cell);
+        }
+        Instant now = clock.instant();
+        if (cached == null || !cached.isExpired(now) || cached.isExpired(now.minus(maxStaleness))) {
+            return null;
+        }
+        staleHits.increment();
+        return cached;
+    }
+
+    public CachedForecast put(GridCell cell, WeatherApiResponse response) {
+        Instant now = clock.instant();
+        CachedForecast cached = new CachedForecast(cell, response, now, now.plus(ttl));
+        synchronized (entries) {
+            entries.put(cell, cached);
+            spatialIndex.put(cached);
+        }
+        forecastStore.save(cached);
+        updateListeners.forEach(listener -> listener.accept(cached));
+        return cached;
+    }
+
+    /**
+     * Registers a listener called with every forecast put into the cache, on the thread that
+     * loaded it. Forecasts another instance fetched are reported when this instance picks them up
+     * from a shared store; other entries loaded back from the store are not.
+     */
+    public void addUpdateListener(Consumer<CachedForecast> listener) {
+        updateListeners.add(listener);
+    }
+
+    /**
+     * Marks {@code cell} as followed by one more watcher. Watched cells are returned by
+     * {@link #hotEntriesExpiringBefore} whatever their read count, each watcher counting as a read.
+     */
+    public void watch(GridCell cell) {
+        watchers.merge(cell, 1, Integer::sum);
+    }
+
+    public void unwatch(GridCell cell) {
+        watchers.computeIfPresent(cell, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Reloads a cell regardless of its freshness. Shares the single-flight slot with
+     * {@link #get}, so readers arriving during the refresh wait for it instead of loading again.
+     * With a shared store, a forecast another instance fetched since this one's is taken instead.
+     * Does not count as an access.
+     */
+    public CachedForecast refresh(GridCell cell, Supplier<WeatherApiResponse> loader) {
+        return singleFlight.execute(cell, () -> {
+            CachedForecast current;
+            synchronized (entries) {
+                current = entries.get(cell);
+            }
+            return loadExclusively(cell, current != null ? current.fetchedAt() : null, loader);
+        });
+    }
+
+    /**
+     * Returns cached entries expiring before {@code deadline} that were read at least
+     * {@code minAccesses} times since the access counts were last decayed, or are watched, most
+     * popular first. Watched cells without an entry, e.g. after it was evicted or its load failed,
+     * are returned as expiring now.
+     */
+    public List<HotEntry> hotEntriesExpiringBefore(Instant deadline, long minAccesses) {
+        List<HotEntry> hot = new ArrayList<>();
+        synchronized (entries) {
+            for (CachedForecast cached : entries.values()) {
+                AtomicLong count = accessCounts.get(cached.cell());
+                int watching = watchers.getOrDefault(cached.cell(), 0);
+                long accesses = (count != null ? count.get() : 0) + watching;
+                if ((accesses >= minAccesses || watching > 0) && cached.expiresAt().isBefore(deadline)) {
+                    hot.add(new HotEntry(cached.cell(), cached.expiresAt(), accesses));
+                }
+            }
+            Instant now = clock.instant();
+            watchers.forEach((cell, watching) -> {
+                if (!entries.containsKey(cell)) {
+                    AtomicLong count = accessCounts.get(cell);
+                    hot.add(new HotEntry(cell, now, (count != null ? count.get() : 0) + watching));
+                }
+            });
+        }
+        hot.sort(Comparator.comparingLong(HotEntry::accesses).reversed());
+        return hot;
+    }
+
+    /**
+     * Halves every access count and forgets cells that dropped to zero, so popularity reflects
+     * recent traffic and cells that stopped being read fall out of {@link #hotEntriesExpiringBefore}.
+     */
+    public void decayAccessCounts() {
+        accessCounts.values().forEach(count -> count.updateAndGet(value -> value >> 1));
+        accessCounts.values().removeIf(count -> count.get() == 0);
+    }
+
+    public CacheStats stats() {
+        synchronized (entries) {
+            return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("weather.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .tag("dataset", dataset)
+                .register(registry);
+        FunctionCounter.builder("weather.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .tag("dataset", dataset)
+                .register(registry);
+        FunctionCounter.builder("weather.cache.requests", staleHits, LongAdder::sum)
+                .tag("result", "stale")
+                .tag("dataset", dataset)
+                .register(registry);
+        FunctionCounter.builder("weather.cache.requests", nearbyHits, LongAdder::sum)
+                .tag("result", "nearby")
+                .tag("dataset", dataset)
+                .register(registry);
+        FunctionCounter.builder("weather.cache.evictions", evictions, LongAdder::sum)
+                .tag("dataset", dataset)
+                .register(registry);
+        FunctionCounter.builder("weather.cache.store.loads", storeLoads, LongAdder::sum)
+                .description("Cache misses served from the forecast store instead of upstream")
+                .tag("dataset", dataset)
+                .register(registry);
+        FunctionCounter.builder("weather.cache.invalidations", invalidations, LongAdder::sum)
+                .description("Entries dropped because another instance saved a newer forecast to the shared store")
+                .tag("dataset", dataset)
+                .register(registry);
+        Gauge.builder("weather.cache.size", this, cache -> cache.stats().size())
+                .tag("dataset", dataset)
+                .register(registry);
+        Gauge.builder("weather.cache.in.flight", singleFlight, SingleFlight::inFlightCount)
+                .tag("dataset", dataset)
+                .register(registry);
+    }
+
+    private void recordAccess(GridCell cell) {
+        accessCounts.computeIfAbsent(cell, key -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Loads {@code cell} from upstream unless another instance sharing the store does, in which
+     * case its forecast is cached here and reported to the update listeners.
+     */
+    private CachedForecast loadExclusively(GridCell cell, Instant after, Supplier<WeatherApiResponse> loader) {
+        CachedForecast[] fetched = new CachedForecast[1];
+        CachedForecast loaded = forecastStore.loadExclusively(cell, after, () -> fetched[0] = put(cell, loader.get()));
+        if (loaded != fetched[0]) {
+            installFromStore(loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Caches a forecast another instance fetched and reports it to the update listeners.
+     */
+    private void installFromStore(CachedForecast loaded) {
+        storeLoads.increment();
+        synchronized (entries) {
+            entries.put(loaded.cell(), loaded);
+            spatialIndex.put(loaded);
+        }
+        updateListeners.forEach(listener -> listener.accept(loaded));
+    }
+
+    /**
+     * Drops the entry of a cell another instance saved a newer forecast of, so the next read picks
+     * that one up from the store. Watched cells are reloaded right away, so their listeners hear
+     * of it.
+     */
+    private void onSaved(GridCell cell, Instant fetchedAt) {
+        synchronized (entries) {
+            CachedForecast cached = entries.get(cell);
+            if (cached == null || !cached.fetchedAt().isBefore(fetchedAt)) {
+                return;
+            }
+            entries.remove(cell);
+            spatialIndex.remove(cell);
+        }
+        invalidations.increment();
+        if (watchers.containsKey(cell)) {
+            CachedForecast loaded = loadFromStore(cell);
+            if (loaded != null) {
+                updateListeners.forEach(listener -> listener.accept(loaded));
+            }
+        }
+    }
+
+    private CachedForecast loadFromStore(GridCell cell) {
+        CachedForecast stored = readStore(cell);
+        return stored != null && !stored.isExpired(clock.instant()) ? stored : null;
+    }
+
+    /**
+     * Returns the store's forecast of {@code cell}, fresh or expired. A fresh one is cached unless
+     * memory already holds one at least as recent.
+     */
+    private CachedForecast readStore(GridCell cell) {
+        CachedForecast stored = forecastStore.load(cell).orElse(null);
+        if (stored == null || stored.isExpired(clock.instant())) {
+            return stored;
+        }
+        synchronized (entries) {
+            CachedForecast cached = entries.get(cell);
+            if (cached != null && !cached.fetchedAt().isBefore(stored.fetchedAt())) {
+                return cached;
+            }
+            entries.put(cell, stored);
+            spatialIndex.put(stored);
+        }
+        storeLoads.increment();
+        return stored;
+    }
+
+    private CachedForecast getIfFresh(GridCell cell) {
+        synchronized (entries) {
+            CachedForecast cached = entries.get(cell);
+            return cached != null && !cached.isExpired(clock.instant()) ? cached : null;
+        }
+    }
+}
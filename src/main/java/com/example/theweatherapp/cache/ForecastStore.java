@@ -0,0 +1,63 @@
+package com.example.theweatherapp.cache;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Second-level storage behind {@link ForecastCache}. Implementations must not throw on I/O
+ * problems: a failing store only costs an extra upstream fetch. A store shared by several
+ * instances can also make them take turns fetching a cell and tell them about each other's saves.
+ */
+public interface ForecastStore {
+
+    ForecastStore NONE = new ForecastStore() {
+        @Override
+        public Optional<CachedForecast> load(GridCell cell) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void save(CachedForecast forecast) {
+        }
+    };
+
+    /**
+     * Returns the last saved forecast for the cell, which may already be expired.
+     */
+    Optional<CachedForecast> load(GridCell cell);
+
+    void save(CachedForecast forecast);
+
+    /**
+     * Runs {@code load}, which fetches the cell from upstream and saves it, unless another instance
+     * sharing this store is doing the same; then returns the fresh forecast that instance saves,
+     * provided it was fetched after {@code after} ({@code null} accepts any). Stores that are not
+     * shared between instances just run {@code load}.
+     */
+    default CachedForecast loadExclusively(GridCell cell, Instant after, Supplier<CachedForecast> load) {
+        return load.get();
+    }
+
+    /**
+     * Like {@link #loadExclusively} for several cells, which {@code load} fetches from upstream
+     * together, returning the forecasts it fetched and saved. Returns the fresh forecast of every
+     * cell that was loaded, by this instance or another one; cells whose load failed are left out.
+     */
+    default Map<GridCell, CachedForecast> loadAllExclusively(Collection<GridCell> cells,
+                                                             Function<List<GridCell>, Map<GridCell, CachedForecast>> load) {
+        return load.apply(List.copyOf(cells));
+    }
+
+    /**
+     * Registers a listener called with the cell and fetch time of every forecast saved to a store
+     * shared between instances, including the ones this instance saved.
+     */
+    default void addSaveListener(BiConsumer<GridCell, Instant> listener) {
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.theweatherapp.cache;
+
+/**
+ * A cell of the lat/lon grid used as the forecast cache key. Coordinates are snapped to the
+ * nearest multiple of {@code size} degrees, so nearby requests share one upstream fetch.
+ */
+public record GridCell(
+        int latIndex,
+        int lonIndex,
+        double size
+) {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    public static GridCell of(double lat, double lon, double size) {
+        return new GridCell((int) Math.round(lat / size), (int) Math.round(lon / size), size);
+    }
+
+    public double latitude() {
+        return latIndex * size;
+    }
+
+    public double longitude() {
+        return lonIndex * size;
+    }
+
+    /**
+     * Great-circle distance in kilometres from this cell's grid point to {@code lat}/{@code lon}.
+     */
+    public double distanceKm(double lat, double lon) {
+        double dLat = Math.toRadians(lat - latitude());
+        double dLon = Math.toRadians(lon - longitude());
+        double a = Math.pow(Math.sin(dLat / 2), 2)
+                + Math.cos(Math.toRadians(latitude())) * Math.cos(Math.toRadians(lat)) * Math.pow(Math.sin(dLon / 2), 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
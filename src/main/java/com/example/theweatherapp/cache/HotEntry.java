@@ -0,0 +1,10 @@
+package com.example.theweatherapp.cache;
+
+import java.time.Instant;
+
+public record HotEntry(
+        GridCell cell,
+        Instant expiresAt,
+        long accesses
+) {
+}
@@ -0,0 +1,115 @@
+package com.example.theweatherapp.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * {@link SharedCacheBackend} on Redis: locks are {@code SET NX PX} keys released by a
+ * compare-and-delete script, notifications go through Redis pub/sub. Subscriptions start with the
+ * application context; if Redis is unreachable then, they are retried in the background instead
+ * of failing startup.
+ */
+@Slf4j
+public class RedisSharedCacheBackend implements SharedCacheBackend, SmartLifecycle {
+
+    private static final RedisScript<Long> DELETE_IF_EQUALS = RedisScript.of(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+    private static final Duration SUBSCRIBE_RETRY = Duration.ofSeconds(5);
+
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private volatile boolean running;
+
+    public RedisSharedCacheBackend(RedisConnectionFactory connectionFactory) {
+        this.redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        redisTemplate.afterPropertiesSet();
+        this.listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.afterPropertiesSet();
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return redisTemplate.opsForValue().get(key);
+    }
+
+    @Override
+    public void set(String key, byte[] value, Duration ttl) {
+        redisTemplate.opsForValue().set(key, value, ttl);
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, String value, Duration ttl) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, bytes(value), ttl));
+    }
+
+    @Override
+    public void deleteIfEquals(String key, String value) {
+        redisTemplate.execute(DELETE_IF_EQUALS, List.of(key), (Object) bytes(value));
+    }
+
+    @Override
+    public void publish(String channel, String message) {
+        redisTemplate.convertAndSend(channel, bytes(message));
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+        listenerContainer.addMessageListener(
+                (message, pattern) -> listener.accept(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(channel));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        startListening();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        listenerContainer.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void startListening() {
+        if (!running) {
+            return;
+        }
+        try {
+            listenerContainer.start();
+        } catch (RuntimeException e) {
+            log.warn("Could not subscribe to shared cache notifications, retrying in {}: {}", SUBSCRIBE_RETRY, e.getMessage());
+            // A container that failed to subscribe still counts as running and ignores start()
+            listenerContainer.stop();
+            CompletableFuture.runAsync(this::startListening,
+                    CompletableFuture.delayedExecutor(SUBSCRIBE_RETRY.toMillis(), TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
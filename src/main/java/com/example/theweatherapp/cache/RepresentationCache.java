@@ -0,0 +1,112 @@
+package com.example.theweatherapp.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Encoded response bodies keyed on forecast version and representation, so each cached forecast
+ * is serialized (and compressed) once per format instead of on every request. Versions change
+ * with every upstream fetch, so entries never go stale; the least recently used ones are evicted
+ * once the bodies held add up to more than {@code maxSize}. Bodies larger than that are encoded
+ * but not kept.
+ */
+@Primary
+@Component
+public class RepresentationCache implements MeterBinder {
+
+    /**
+     * Keeps nothing: every call encodes, for representations too varied to be worth caching.
+     */
+    public static final RepresentationCache NONE = new RepresentationCache("none", DataSize.ofBytes(0));
+
+    private final String name;
+    private final long maxBytes;
+    private final Map<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public RepresentationCache(@Value("${forecast.representation.max-size:32MB}") DataSize maxSize) {
+        this("forecast", maxSize);
+    }
+
+    /**
+     * Creates a separately bounded cache; {@code name} tags its metrics.
+     */
+    public RepresentationCache(String name, DataSize maxSize) {
+        this.name = name;
+        this.maxBytes = maxSize.toBytes();
+    }
+
+    public byte[] get(String key, Supplier<byte[]> encoder) {
+        byte[] cached = getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        byte[] encoded = encoder.get();
+        if (encoded.length <= maxBytes) {
+            put(key, encoded);
+        }
+        return encoded;
+    }
+
+    /**
+     * Returns the cached body for {@code key} without counting a request, or {@code null}.
+     */
+    public byte[] getIfPresent(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    public long size() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("weather.representation.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("weather.representation.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder("weather.representation.cache.size", this, RepresentationCache::size)
+                .description("Bytes of encoded bodies held")
+                .baseUnit("bytes")
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    private void put(String key, byte[] encoded) {
+        synchronized (entries) {
+            byte[] previous = entries.put(key, encoded);
+            bytes += encoded.length - (previous != null ? previous.length : 0);
+            Iterator<byte[]> eldest = entries.values().iterator();
+            while (bytes > maxBytes) {
+                bytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.theweatherapp.cache;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Key-value store with expiring keys and publish/subscribe, reachable from every instance, that
+ * {@link SharedForecastStore} keeps forecasts, locks and save notifications in. Operations throw
+ * on connection problems; the store turns those into cache misses.
+ */
+public interface SharedCacheBackend {
+
+    /**
+     * Returns the value of {@code key}, or {@code null} if it is missing or expired.
+     */
+    byte[] get(String key);
+
+    void set(String key, byte[] value, Duration ttl);
+
+    /**
+     * Sets {@code key} only if it is missing. Returns whether it was set.
+     */
+    boolean setIfAbsent(String key, String value, Duration ttl);
+
+    /**
+     * Deletes {@code key} if it still holds {@code value}, atomically.
+     */
+    void deleteIfEquals(String key, String value);
+
+    void publish(String channel, String message);
+
+    /**
+     * Calls {@code listener} with every message published to {@code channel} from now on, by any
+     * instance.
+     */
+    void subscribe(String channel, Consumer<String> listener);
+}
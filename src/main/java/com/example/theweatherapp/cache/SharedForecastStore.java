@@ -0,0 +1,314 @@
+package com.example.theweatherapp.cache;
+
+import com.example.theweatherapp.client.CircuitBreaker;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Forecast store shared by every instance behind a load balancer, so the fleet fetches each cell
+ * from upstream once per TTL instead of once per instance. The in-memory {@link ForecastCache} of
+ * each instance acts as a near-cache in front of it.
+ * <p>
+ * A forecast is kept under {@code <prefix><latIndex>:<lonIndex>:<gridSize>} as
+ * {@code fetchedAt:long, expiresAt:long, payload}, the payload being the JSON-encoded
+ * {@link WeatherApiResponse}, for {@code retention} past its expiry so it can still be served
+ * stale. Every save is announced on {@code <prefix>saved} so near-caches holding an older forecast
+ * of the cell can drop it.
+ * <p>
+ * An instance about to fetch a cell first takes the cell's lock, a key that expires after
+ * {@code lockLease} in case its holder dies. Instances that find it taken poll for the forecast the
+ * holder saves and fetch the cell themselves only if none appears within {@code lockWait}. When the
+ * backend is unreachable, every instance fetches on its own: once the circuit breaker opens, the
+ * backend is not called at all until it lets a trial call through, so an outage costs requests
+ * its command timeout only a few times instead of on every miss. The circuit opening and closing
+ * is logged at WARN; calls it rejects only at DEBUG.
+ */
+@Slf4j
+public class SharedForecastStore implements ForecastStore {
+
+    private static final int HEADER_BYTES = 8 + 8;
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(50);
+
+    private final SharedCacheBackend backend;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final String keyPrefix;
+    private final Duration lockLease;
+    private final Duration lockWait;
+    private final Duration retention;
+    private final CircuitBreaker circuitBreaker;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicReference<CircuitBreaker.State> reportedState =
+            new AtomicReference<>(CircuitBreaker.State.CLOSED);
+
+    public SharedForecastStore(SharedCacheBackend backend, ObjectMapper objectMapper, Clock clock, String keyPrefix,
+                               Duration lockLease, Duration lockWait, Duration retention, CircuitBreaker circuitBreaker) {
+        this.backend = backend;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.keyPrefix = keyPrefix;
+        this.lockLease = lockLease;
+        this.lockWait = lockWait;
+        this.retention = retention;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public Optional<CachedForecast> load(GridCell cell) {
+        try {
+            byte[] value = call(() -> backend.get(key(cell)));
+            return value != null ? Optional.of(decode(cell, value)) : Optional.empty();
+        } catch (CircuitOpenException e) {
+            log.debug("Not reading cached forecast for {}, the shared store circuit is open", cell);
+            return Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not read cached forecast for {} from the shared store", cell, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void save(CachedForecast forecast) {
+        Duration ttl = Duration.between(clock.instant(), forecast.expiresAt()).plus(retention);
+        if (ttl.isNegative() || ttl.isZero()) {
+            return;
+        }
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(forecast.response());
+            byte[] value = ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                    .putLong(forecast.fetchedAt().toEpochMilli())
+                    .putLong(forecast.expiresAt().toEpochMilli())
+                    .put(payload)
+                    .array();
+            call(() -> {
+                backend.set(key(forecast.cell()), value, ttl);
+                backend.publish(channel(), cellKey(forecast.cell()) + ":" + forecast.fetchedAt().toEpochMilli());
+                return null;
+            });
+        } catch (CircuitOpenException e) {
+            log.debug("Not saving forecast for {}, the shared store circuit is open", forecast.cell());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not save forecast for {} to the shared store", forecast.cell(), e);
+        }
+    }
+
+    @Override
+    public CachedForecast loadExclusively(GridCell cell, Instant after, Supplier<CachedForecast> load) {
+        long deadline = System.nanoTime() + lockWait.toNanos();
+        while (true) {
+            if (tryLock(cell)) {
+                try {
+                    CachedForecast saved = loadNewer(cell, after);
+                    return saved != null ? saved : load.get();
+                } finally {
+                    unlock(cell);
+                }
+            }
+            CachedForecast saved = loadNewer(cell, after);
+            if (saved != null) {
+                return saved;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                log.debug("Gave up waiting for another instance to load {}", cell);
+                return load.get();
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return load.get();
+            }
+        }
+    }
+
+    /**
+     * Locks every cell it can and loads those in one call, unless another instance saved them in
+     * the meantime. Cells locked by other instances are polled for like in {@link #loadExclusively}
+     * and loaded in a second call if their forecast does not appear within {@code lockWait}.
+     */
+    @Override
+    public Map<GridCell, CachedForecast> loadAllExclusively(Collection<GridCell> cells,
+                                                            Function<List<GridCell>, Map<GridCell, CachedForecast>> load) {
+        long deadline = System.nanoTime() + lockWait.toNanos();
+        Map<GridCell, CachedForecast> loaded = new HashMap<>();
+        List<GridCell> locked = new ArrayList<>();
+        List<GridCell> waiting = new ArrayList<>();
+        for (GridCell cell : cells) {
+            (tryLock(cell) ? locked : waiting).add(cell);
+        }
+        try {
+            List<GridCell> toLoad = new ArrayList<>();
+            for (GridCell cell : locked) {
+                CachedForecast saved = loadNewer(cell, null);
+                if (saved != null) {
+                    loaded.put(cell, saved);
+                } else {
+                    toLoad.add(cell);
+                }
+            }
+            if (!toLoad.isEmpty()) {
+                loaded.putAll(load.apply(toLoad));
+            }
+        } finally {
+            locked.forEach(this::unlock);
+        }
+        while (!waiting.isEmpty()) {
+            waiting.removeIf(cell -> {
+                CachedForecast saved = loadNewer(cell, null);
+                if (saved != null) {
+                    loaded.put(cell, saved);
+                }
+                return saved != null;
+            });
+            if (waiting.isEmpty() || System.nanoTime() - deadline > 0) {
+                break;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (!waiting.isEmpty()) {
+            log.debug("Gave up waiting for another instance to load {} cells", waiting.size());
+            loaded.putAll(load.apply(waiting));
+        }
+        return loaded;
+    }
+
+    @Override
+    public void addSaveListener(BiConsumer<GridCell, Instant> listener) {
+        backend.subscribe(channel(), message -> {
+            String[] parts = message.split(":");
+            try {
+                GridCell cell = new GridCell(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Double.parseDouble(parts[2]));
+                listener.accept(cell, Instant.ofEpochMilli(Long.parseLong(parts[3])));
+            } catch (RuntimeException e) {
+                log.warn("Ignoring malformed forecast save notification '{}'", message, e);
+            }
+        });
+    }
+
+    private CachedForecast loadNewer(GridCell cell, Instant after) {
+        CachedForecast saved = load(cell).orElse(null);
+        if (saved == null || saved.isExpired(clock.instant()) || (after != null && !saved.fetchedAt().isAfter(after))) {
+            return null;
+        }
+        return saved;
+    }
+
+    /**
+     * Takes the lock of {@code cell}, or pretends to when the backend is unreachable so the caller
+     * does not wait for a holder that may never save anything.
+     */
+    private boolean tryLock(GridCell cell) {
+        try {
+            return call(() -> backend.setIfAbsent(lockKey(cell), instanceId, lockLease));
+        } catch (CircuitOpenException e) {
+            log.debug("Not locking {}, the shared store circuit is open", cell);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Could not lock {} in the shared store", cell, e);
+            return true;
+        }
+    }
+
+    private void unlock(GridCell cell) {
+        try {
+            call(() -> {
+                backend.deleteIfEquals(lockKey(cell), instanceId);
+                return null;
+            });
+        } catch (CircuitOpenException e) {
+            log.debug("Not unlocking {}, the shared store circuit is open, it expires after {}", cell, lockLease);
+        } catch (RuntimeException e) {
+            log.warn("Could not unlock {} in the shared store, it expires after {}", cell, lockLease, e);
+        }
+    }
+
+    /**
+     * Runs a backend operation through the circuit breaker, failing right away while it is open.
+     */
+    private <T> T call(Supplier<T> operation) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new CircuitOpenException();
+        }
+        try {
+            T result = operation.get();
+            circuitBreaker.onSuccess();
+            reportStateChange(null);
+            return result;
+        } catch (RuntimeException e) {
+            circuitBreaker.onFailure();
+            reportStateChange(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Logs the circuit opening or closing, once per change. A failed trial call leaves it open, so
+     * the half-open state in between is not reported.
+     */
+    private void reportStateChange(RuntimeException cause) {
+        CircuitBreaker.State state = circuitBreaker.state();
+        if (state == CircuitBreaker.State.HALF_OPEN || reportedState.getAndSet(state) == state) {
+            return;
+        }
+        if (state == CircuitBreaker.State.OPEN) {
+            log.warn("Shared store circuit opened, instances fetch on their own until it recovers: {}", cause.toString());
+        } else {
+            log.warn("Shared store circuit closed, the shared store is used again");
+        }
+    }
+
+    private CachedForecast decode(GridCell cell, byte[] value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(value);
+        Instant fetchedAt = Instant.ofEpochMilli(buffer.getLong());
+        Instant expiresAt = Instant.ofEpochMilli(buffer.getLong());
+        WeatherApiResponse response = objectMapper.readValue(value, HEADER_BYTES, value.length - HEADER_BYTES,
+                WeatherApiResponse.class);
+        return new CachedForecast(cell, response, fetchedAt, expiresAt);
+    }
+
+    private static final class CircuitOpenException extends RuntimeException {
+
+        CircuitOpenException() {
+            super("Shared store circuit is open", null, false, false);
+        }
+    }
+
+    private String key(GridCell cell) {
+        return keyPrefix + cellKey(cell);
+    }
+
+    private String lockKey(GridCell cell) {
+        return keyPrefix + "lock:" + cellKey(cell);
+    }
+
+    private String channel() {
+        return keyPrefix + "saved";
+    }
+
+    private static String cellKey(GridCell cell) {
+        return cell.latIndex() + ":" + cell.lonIndex() + ":" + cell.size();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.theweatherapp.cache;
+
+import com.example.theweatherapp.exception.WeatherApiException;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent loads of the same key. The first caller runs the loader, every other
+ * caller arriving while it is in flight waits on the same future and gets the same result or
+ * exception.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Duration waitTimeout;
+
+    public SingleFlight(Duration waitTimeout) {
+        this.waitTimeout = waitTimeout;
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            V value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Like {@link #execute} for several keys at once. Keys nobody is loading are claimed and handed
+     * to {@code loader} in one call, which completes the future of each; keys already in flight are
+     * waited for. Returns the value of every key that loaded and puts the exception of every other
+     * one into {@code failures}. Claimed keys the loader leaves incomplete fail.
+     */
+    public Map<K, V> executeAll(Collection<K> keys, Consumer<Map<K, CompletableFuture<V>>> loader,
+                                Map<K, RuntimeException> failures) {
+        Map<K, CompletableFuture<V>> claimed = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> awaited = new LinkedHashMap<>();
+        for (K key : keys) {
+            CompletableFuture<V> future = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+            if (existing != null) {
+                awaited.put(key, existing);
+            } else {
+                claimed.put(key, future);
+            }
+        }
+        try {
+            if (!claimed.isEmpty()) {
+                loader.accept(claimed);
+            }
+        } catch (RuntimeException e) {
+            claimed.values().forEach(future -> future.completeExceptionally(e));
+        } finally {
+            claimed.forEach((key, future) -> {
+                future.completeExceptionally(new WeatherApiException("Error fetching weather data"));
+                inFlight.remove(key, future);
+            });
+        }
+        Map<K, V> values = new LinkedHashMap<>();
+        for (Map<K, CompletableFuture<V>> futures : List.of(claimed, awaited)) {
+            futures.forEach((key, future) -> {
+                try {
+                    values.put(key, await(future));
+                } catch (RuntimeException e) {
+                    failures.put(key, e);
+                }
+            });
+        }
+        return values;
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new WeatherApiException("Error fetching weather data");
+        } catch (TimeoutException e) {
+            throw new WeatherApiException("Timed out waiting for weather data");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WeatherApiException("Interrupted while waiting for weather data");
+        }
+    }
+}
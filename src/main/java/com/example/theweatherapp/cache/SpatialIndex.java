@@ -0,0 +1,82 @@
+package com.example.theweatherapp.cache;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cached forecasts bucketed by coarse lat/lon squares of {@code bucketDegrees}, so the entries
+ * near a point are found by scanning the few buckets overlapping the search radius instead of the
+ * whole cache. Longitude buckets wrap around the antimeridian. Not thread-safe; {@link ForecastCache}
+ * guards it with its entries lock.
+ */
+final class SpatialIndex {
+
+    private static final double KM_PER_DEGREE = 111.195;
+
+    private final double bucketDegrees;
+    private final int lonBuckets;
+    private final Map<Long, Map<GridCell, CachedForecast>> buckets = new HashMap<>();
+
+    SpatialIndex(double bucketDegrees) {
+        this.bucketDegrees = bucketDegrees;
+        this.lonBuckets = (int) Math.ceil(360 / bucketDegrees);
+    }
+
+    void put(CachedForecast cached) {
+        GridCell cell = cached.cell();
+        buckets.computeIfAbsent(key(latBucket(cell.latitude()), lonBucket(cell.longitude())), key -> new HashMap<>())
+                .put(cell, cached);
+    }
+
+    void remove(GridCell cell) {
+        long key = key(latBucket(cell.latitude()), lonBucket(cell.longitude()));
+        Map<GridCell, CachedForecast> bucket = buckets.get(key);
+        if (bucket != null && bucket.remove(cell) != null && bucket.isEmpty()) {
+            buckets.remove(key);
+        }
+    }
+
+    /**
+     * Returns the entry closest to {@code lat}/{@code lon} among those not expired at
+     * {@code now} and at most {@code radiusKm} away, or {@code null} if there is none.
+     */
+    CachedForecast nearest(double lat, double lon, double radiusKm, Instant now) {
+        double latSpan = radiusKm / KM_PER_DEGREE;
+        double cosLat = Math.cos(Math.toRadians(Math.min(89, Math.abs(lat) + latSpan)));
+        double lonSpan = Math.min(180, latSpan / cosLat);
+        int fromLon = (int) Math.floor((lon - lonSpan) / bucketDegrees);
+        int toLon = Math.min(fromLon + lonBuckets - 1, (int) Math.floor((lon + lonSpan) / bucketDegrees));
+
+        CachedForecast nearest = null;
+        double nearestKm = radiusKm;
+        for (int latBucket = latBucket(lat - latSpan); latBucket <= latBucket(lat + latSpan); latBucket++) {
+            for (int lonBucket = fromLon; lonBucket <= toLon; lonBucket++) {
+                Map<GridCell, CachedForecast> bucket = buckets.get(key(latBucket, Math.floorMod(lonBucket, lonBuckets)));
+                if (bucket == null) {
+                    continue;
+                }
+                for (CachedForecast cached : bucket.values()) {
+                    double km = cached.cell().distanceKm(lat, lon);
+                    if (km <= nearestKm && !cached.isExpired(now)) {
+                        nearest = cached;
+                        nearestKm = km;
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private int latBucket(double lat) {
+        return (int) Math.floor(lat / bucketDegrees);
+    }
+
+    private int lonBucket(double lon) {
+        return Math.floorMod((int) Math.floor(lon / bucketDegrees), lonBuckets);
+    }
+
+    private static long key(int latBucket, int lonBucket) {
+        return ((long) latBucket << 32) | (lonBucket & 0xffffffffL);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.theweatherapp.client;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of concurrent upstream calls. Callers that cannot get a permit within
+ * {@code maxWait} are rejected instead of queueing behind a slow upstream.
+ */
+public class Bulkhead {
+
+    private final int maxConcurrentCalls;
+    private final Duration maxWait;
+    private final Semaphore permits;
+
+    public Bulkhead(int maxConcurrentCalls, Duration maxWait) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+    }
+
+    public boolean tryAcquire() {
+        try {
+            return permits.tryAcquire(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int activeCalls() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.theweatherapp.client;
+
+import com.example.theweatherapp.cache.GridCell;
+import com.example.theweatherapp.exception.WeatherApiException;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Open-Meteo forecast client. Responses are read as raw bytes and decoded separately so that
+ * upstream latency ({@code weather.upstream.requests}), payload size
+ * ({@code weather.upstream.payload.size}) and decoding time ({@code weather.upstream.deserialization})
+ * are measured on their own. Calls pass through a {@link Bulkhead} and a {@link CircuitBreaker}, so
+ * an unhealthy or slow upstream is failed fast instead of tying up request threads. Before that
+ * they take their share of the {@link RateLimitBudget}, one token per location, so we stay within
+ * Open-Meteo's quotas. Only transport errors, 5xx and 429 responses count against the circuit; a
+ * successful response with a payload that does not decode or validate does not.
+ */
+@Component
+@RequiredArgsConstructor
+public class OpenMeteoClient {
+
+    private static final String DAILY_URL_TEMPLATE =
+            "%s?latitude=%s&longitude=%s&daily=weather_code,temperature_2m_max,temperature_2m_min,surface_pressure_mean,sunshine_duration&timezone=auto";
+    private static final String HOURLY_URL_TEMPLATE =
+            "%s?latitude=%s&longitude=%s&hourly=shortwave_radiation,sunshine_duration&forecast_days=7&timezone=auto";
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final RateLimitBudget rateLimitBudget;
+    @Value("${open-meteo.api.url}")
+    private String apiUrl;
+
+    public WeatherApiResponse fetchDaily(double lat, double lon) {
+        return fetchDaily(lat, lon, RateLimitBudget.Priority.USER);
+    }
+
+    public WeatherApiResponse fetchDaily(double lat, double lon, RateLimitBudget.Priority priority) {
+        String url = String.format(DAILY_URL_TEMPLATE, apiUrl, formatCoordinate(lat), formatCoordinate(lon));
+        return fetch(url, "single", 1, priority, WeatherApiResponse.class);
+    }
+
+    public WeatherApiResponse fetchHourly(double lat, double lon) {
+        String url = String.format(HOURLY_URL_TEMPLATE, apiUrl, formatCoordinate(lat), formatCoordinate(lon));
+        return fetch(url, "hourly", 1, RateLimitBudget.Priority.USER, WeatherApiResponse.class);
+    }
+
+    /**
+     * Fetches all cells in one upstream call using Open-Meteo's comma-separated coordinate lists.
+     * The returned list is in the same order as {@code cells}.
+     */
+    public List<WeatherApiResponse> fetchDaily(List<GridCell> cells) {
+        if (cells.size() == 1) {
+            return List.of(fetchDaily(cells.getFirst().latitude(), cells.getFirst().longitude()));
+        }
+        String url = String.format(DAILY_URL_TEMPLATE, apiUrl,
+                cells.stream().map(cell -> formatCoordinate(cell.latitude())).collect(Collectors.joining(",")),
+                cells.stream().map(cell -> formatCoordinate(cell.longitude())).collect(Collectors.joining(",")));
+        WeatherApiResponse[] responses = fetch(url, "batch", cells.size(), RateLimitBudget.Priority.USER, WeatherApiResponse[].class);
+        if (responses.length != cells.size()) {
+            throw new WeatherApiException("Weather API Error");
+        }
+        return Arrays.asList(responses);
+    }
+
+    private <T> T fetch(String url, String mode, int cost, RateLimitBudget.Priority priority, Class<T> responseType) {
+        if (!rateLimitBudget.tryAcquire(cost, priority)) {
+            throw rejected("rate_limited");
+        }
+        if (!bulkhead.tryAcquire()) {
+            rateLimitBudget.refund(cost);
+            throw rejected("bulkhead_full");
+        }
+        try {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                rateLimitBudget.refund(cost);
+                throw rejected("circuit_open");
+            }
+            return fetchGuarded(url, mode, responseType);
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private <T> T fetchGuarded(String url, String mode, Class<T> responseType) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        boolean upstreamHealthy = false;
+        try {
+            byte[] body = restTemplate.getForObject(url, byte[].class);
+            // Upstream answered; a payload we cannot use is a data error, not an outage
+            upstreamHealthy = true;
+            if (body == null) {
+                throw new WeatherApiException("Weather API Error");
+            }
+            DistributionSummary.builder("weather.upstream.payload.size")
+                    .baseUnit("bytes")
+                    .tag("mode", mode)
+                    .register(meterRegistry)
+                    .record(body.length);
+            outcome = "invalid_payload";
+            T response = decode(body, responseType);
+            if (response == null) {
+                throw new WeatherApiException("Weather API Error");
+            }
+            outcome = "success";
+            return response;
+        } catch (HttpClientErrorException e) {
+            upstreamHealthy = e.getStatusCode() != HttpStatus.TOO_MANY_REQUESTS;
+            if (!upstreamHealthy) {
+                rateLimitBudget.onThrottled();
+            }
+            throw new WeatherApiException("Error fetching weather data", e);
+        } catch (RestClientException e) {
+            throw new WeatherApiException("Error fetching weather data", e);
+        } finally {
+            if (upstreamHealthy) {
+                circuitBreaker.onSuccess();
+            } else {
+                circuitBreaker.onFailure();
+            }
+            sample.stop(Timer.builder("weather.upstream.requests")
+                    .tag("mode", mode)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private WeatherApiException rejected(String reason) {
+        meterRegistry.counter("weather.upstream.rejected", "reason", reason).increment();
+        return new WeatherApiException("Weather API is temporarily unavailable");
+    }
+
+    private <T> T decode(byte[] body, Class<T> responseType) {
+        long start = System.nanoTime();
+        try {
+            return objectMapper.readValue(body, responseType);
+        } catch (IOException e) {
+            throw new WeatherApiException("Error fetching weather data", e);
+        } finally {
+            meterRegistry.timer("weather.upstream.deserialization")
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String formatCoordinate(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+}
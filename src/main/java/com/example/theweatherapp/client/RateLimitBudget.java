@@ -0,0 +1,198 @@
+package com.example.theweatherapp.client;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps upstream calls within Open-Meteo's per-minute, per-hour and per-day quotas with one token
+ * bucket per quota. A bucket holds {@code burst} of its quota and refills at the rest of it spread
+ * over the window, so no window ever sees more than its quota while idle periods still allow a
+ * burst. A quota too small to split that way, such as {@code 1/PT1M}, has no burst: its bucket
+ * holds the one call, available right away, and refills it a whole window after it was taken, so
+ * its calls are always at least a window apart.
+ * <p>
+ * User-facing calls that find a bucket short reserve their tokens anyway and wait until they are
+ * refilled, in arrival order, as long as that takes at most {@code maxWait}; otherwise they are
+ * rejected. Background calls never wait and are rejected once taking their tokens would leave any
+ * bucket below {@code backgroundReserve} of its capacity, which keeps that share for users.
+ */
+public class RateLimitBudget {
+
+    public enum Priority {
+        USER, BACKGROUND
+    }
+
+    /**
+     * At most {@code limit} calls per {@code window}.
+     */
+    public record Quota(int limit, Duration window) {
+
+        public Quota {
+            if (limit < 1) {
+                throw new IllegalArgumentException("Rate limit quota must allow at least one call, was " + limit);
+            }
+            if (window.isNegative() || window.isZero()) {
+                throw new IllegalArgumentException("Rate limit quota window must be positive, was " + window);
+            }
+        }
+
+        /**
+         * Parses {@code <limit>/<ISO-8601 duration>}, e.g. {@code 600/PT1M}.
+         */
+        public static Quota parse(String value) {
+            int slash = value.indexOf('/');
+            try {
+                return new Quota(Integer.parseInt(value.substring(0, slash).trim()),
+                        Duration.parse(value.substring(slash + 1).trim()));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid rate limit quota '" + value + "', expected e.g. 600/PT1M", e);
+            }
+        }
+    }
+
+    private final List<Bucket> buckets;
+    private final double backgroundReserve;
+    private final Duration maxWait;
+    private final Clock clock;
+
+    public RateLimitBudget(List<Quota> quotas, double burst, double backgroundReserve, Duration maxWait, Clock clock) {
+        if (burst <= 0 || burst >= 1) {
+            throw new IllegalArgumentException("Burst must be between 0 and 1, was " + burst);
+        }
+        Instant now = clock.instant();
+        this.buckets = quotas.stream()
+                .sorted(Comparator.comparing(Quota::window))
+                .map(quota -> new Bucket(quota, burst, now))
+                .toList();
+        this.backgroundReserve = backgroundReserve;
+        this.maxWait = maxWait;
+        this.clock = clock;
+    }
+
+    /**
+     * Budget without quotas, letting every call through.
+     */
+    public static RateLimitBudget unlimited() {
+        return new RateLimitBudget(List.of(), 0.5, 0, Duration.ZERO, Clock.systemUTC());
+    }
+
+    /**
+     * Takes {@code cost} tokens from every bucket, waiting for them if needed and allowed.
+     * Returns {@code false} without taking anything when the call has to be rejected.
+     */
+    public boolean tryAcquire(int cost, Priority priority) {
+        long waitNanos = reserve(cost, priority);
+        if (waitNanos < 0) {
+            return false;
+        }
+        if (waitNanos > 0) {
+            try {
+                Thread.sleep(Duration.ofNanos(waitNanos));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                refund(cost);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gives back tokens taken for a call that was not made after all.
+     */
+    public synchronized void refund(int cost) {
+        for (Bucket bucket : buckets) {
+            bucket.tokens = Math.min(bucket.capacity, bucket.tokens + cost);
+        }
+    }
+
+    /**
+     * Empties the bucket of the shortest window after upstream answered 429, so calls back off
+     * until it refills.
+     */
+    public synchronized void onThrottled() {
+        if (!buckets.isEmpty()) {
+            Bucket bucket = buckets.getFirst();
+            bucket.refill(clock.instant());
+            bucket.tokens = Math.min(bucket.tokens, 0);
+        }
+    }
+
+    public List<Quota> quotas() {
+        return buckets.stream().map(bucket -> bucket.quota).toList();
+    }
+
+    /**
+     * Tokens currently left for {@code quota}, negative while waiting callers are owed tokens.
+     */
+    public synchronized double remaining(Quota quota) {
+        Instant now = clock.instant();
+        for (Bucket bucket : buckets) {
+            if (bucket.quota.equals(quota)) {
+                bucket.refill(now);
+                return bucket.tokens;
+            }
+        }
+        throw new IllegalArgumentException("Unknown quota " + quota);
+    }
+
+    /**
+     * Returns how long the caller has to wait for its tokens, or -1 if it is rejected.
+     */
+    private synchronized long reserve(int cost, Priority priority) {
+        Instant now = clock.instant();
+        long waitNanos = 0;
+        for (Bucket bucket : buckets) {
+            bucket.refill(now);
+            if (priority == Priority.BACKGROUND) {
+                if (bucket.tokens - cost < bucket.capacity * backgroundReserve) {
+                    return -1;
+                }
+            } else {
+                waitNanos = Math.max(waitNanos, bucket.nanosUntil(cost));
+            }
+        }
+        if (waitNanos > maxWait.toNanos()) {
+            return -1;
+        }
+        for (Bucket bucket : buckets) {
+            bucket.tokens -= cost;
+        }
+        return waitNanos;
+    }
+
+    private static final class Bucket {
+
+        private final Quota quota;
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private Instant refilledAt;
+
+        private Bucket(Quota quota, double burst, Instant now) {
+            this.quota = quota;
+            this.capacity = Math.max(1, quota.limit() * burst);
+            double refilled = quota.limit() > capacity ? quota.limit() - capacity : quota.limit();
+            this.tokensPerNano = refilled / quota.window().toNanos();
+            this.tokens = capacity;
+            this.refilledAt = now;
+        }
+
+        private void refill(Instant now) {
+            if (now.isAfter(refilledAt)) {
+                tokens = Math.min(capacity, tokens + Duration.between(refilledAt, now).toNanos() * tokensPerNano);
+                refilledAt = now;
+            }
+        }
+
+        private long nanosUntil(int cost) {
+            if (tokens >= cost) {
+                return 0;
+            }
+            return tokensPerNano > 0 ? (long) Math.ceil((cost - tokens) / tokensPerNano) : Long.MAX_VALUE;
+        }
+    }
+}
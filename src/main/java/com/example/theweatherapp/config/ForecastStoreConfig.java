@@ -0,0 +1,54 @@
+package com.example.theweatherapp.config;
+
+import com.example.theweatherapp.cache.FileForecastStore;
+import com.example.theweatherapp.cache.ForecastStore;
+import com.example.theweatherapp.cache.SharedCacheBackend;
+import com.example.theweatherapp.cache.SharedForecastStore;
+import com.example.theweatherapp.client.CircuitBreaker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+
+@Configuration
+public class ForecastStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "forecast.store.type", havingValue = "file")
+    public ForecastStore fileForecastStore(@Value("${forecast.store.path:data/forecast-store.log}") Path path,
+                                           ObjectMapper objectMapper,
+                                           Clock clock,
+                                           @Value("${forecast.cache.stale-if-error:PT6H}") Duration retention) {
+        return new FileForecastStore(path, objectMapper, clock, retention);
+    }
+
+    /**
+     * The {@link SharedCacheBackend} comes from {@link RedisForecastStoreConfig}.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "forecast.store.type", havingValue = "redis")
+    public ForecastStore sharedForecastStore(SharedCacheBackend sharedCacheBackend,
+                                             ObjectMapper objectMapper,
+                                             Clock clock,
+                                             @Value("${forecast.store.redis.key-prefix:weather:forecast:}") String keyPrefix,
+                                             @Value("${forecast.store.redis.lock-lease:PT10S}") Duration lockLease,
+                                             @Value("${forecast.store.redis.lock-wait:PT5S}") Duration lockWait,
+                                             @Value("${forecast.cache.stale-if-error:PT6H}") Duration retention,
+                                             @Value("${forecast.store.redis.circuit-breaker.failure-threshold:3}") int failureThreshold,
+                                             @Value("${forecast.store.redis.circuit-breaker.open-duration:PT10S}") Duration openDuration) {
+        return new SharedForecastStore(sharedCacheBackend, objectMapper, clock, keyPrefix, lockLease, lockWait, retention,
+                new CircuitBreaker(failureThreshold, openDuration, clock));
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(ForecastStore.class)
+    public ForecastStore noForecastStore() {
+        return ForecastStore.NONE;
+    }
+}
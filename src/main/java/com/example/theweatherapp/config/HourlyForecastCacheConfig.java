@@ -0,0 +1,37 @@
+package com.example.theweatherapp.config;
+
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.ForecastStore;
+import com.example.theweatherapp.cache.RepresentationCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Separate caches behind the solar yield endpoint. The hourly dataset shares the grid and
+ * coalescing behaviour of the daily cache but is not persisted: hourly payloads are 24 times
+ * larger and cheap enough to refetch after a restart. Encoded solar bodies get their own
+ * representation cache, so their large hourly variants never evict daily and summary bodies.
+ */
+@Configuration
+public class HourlyForecastCacheConfig {
+
+    @Bean
+    public ForecastCache hourlyForecastCache(
+            @Value("${forecast.hourly.cache.ttl:PT30M}") Duration ttl,
+            @Value("${forecast.hourly.cache.max-entries:2000}") int maxEntries,
+            @Value("${forecast.cache.in-flight-timeout:PT10S}") Duration inFlightTimeout,
+            Clock clock) {
+        return new ForecastCache("hourly", ttl, maxEntries, inFlightTimeout, ForecastStore.NONE, clock);
+    }
+
+    @Bean
+    public RepresentationCache solarRepresentationCache(
+            @Value("${forecast.representation.solar.max-size:16MB}") DataSize maxSize) {
+        return new RepresentationCache("solar", maxSize);
+    }
+}
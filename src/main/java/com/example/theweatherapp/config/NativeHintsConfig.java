@@ -0,0 +1,44 @@
+package com.example.theweatherapp.config;
+
+import com.example.theweatherapp.dto.BatchForecastRequestDto;
+import com.example.theweatherapp.dto.BatchForecastResultDto;
+import com.example.theweatherapp.dto.DailyForecastDto;
+import com.example.theweatherapp.dto.DailySolarYieldDto;
+import com.example.theweatherapp.dto.HourlySolarYieldDto;
+import com.example.theweatherapp.dto.LocationDto;
+import com.example.theweatherapp.dto.SolarYieldDto;
+import com.example.theweatherapp.dto.WeeklyForecastSummaryDto;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ * Reflection hints for ahead-of-time builds. Spring infers the bodies of plain controller methods,
+ * but the Open-Meteo payload is decoded by hand, forecasts are encoded ahead of time into cached
+ * bodies and streamed as events, and the stores write the payload back as JSON, so those types are
+ * registered here, together with the custom deserializers they name.
+ */
+@Configuration
+@ImportRuntimeHints(NativeHintsConfig.JsonBindingHints.class)
+public class NativeHintsConfig {
+
+    public static class JsonBindingHints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                    WeatherApiResponse.class,
+                    BatchForecastRequestDto.class,
+                    BatchForecastResultDto.class,
+                    DailyForecastDto.class,
+                    DailySolarYieldDto.class,
+                    HourlySolarYieldDto.class,
+                    LocationDto.class,
+                    SolarYieldDto.class,
+                    WeeklyForecastSummaryDto.class);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.theweatherapp.config;
+
+import com.example.theweatherapp.cache.RedisSharedCacheBackend;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+/**
+ * Redis backend of the shared forecast store, set up for {@code forecast.store.type=redis} when
+ * the optional Redis client is on the classpath.
+ */
+@Configuration
+@ConditionalOnClass(RedisConnectionFactory.class)
+@ConditionalOnProperty(name = "forecast.store.type", havingValue = "redis")
+public class RedisForecastStoreConfig {
+
+    @Bean
+    public RedisSharedCacheBackend redisSharedCacheBackend(RedisConnectionFactory connectionFactory) {
+        return new RedisSharedCacheBackend(connectionFactory);
+    }
+}
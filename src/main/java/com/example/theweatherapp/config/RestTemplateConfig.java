@@ -1,20 +1,96 @@
 package com.example.theweatherapp.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.Duration;
+import java.util.function.ToDoubleFunction;
 
+/**
+ * Upstream HTTP client: a pooled Apache HttpClient with keep-alive and transparent gzip/deflate
+ * decoding. Pool usage is published as {@code http.client.pool.*} gauges.
+ * <p>
+ * This is the classic (blocking) client {@link RestTemplate} needs, which speaks HTTP/1.1 only:
+ * connections are reused through the pool rather than multiplexed over HTTP/2.
+ */
 @Configuration
 public class RestTemplateConfig {
 
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager upstreamConnectionManager(
+            @Value("${open-meteo.http.max-connections:50}") int maxConnections,
+            @Value("${open-meteo.http.max-connections-per-route:50}") int maxConnectionsPerRoute,
+            @Value("${open-meteo.http.connect-timeout:PT5S}") Duration connectTimeout,
+            @Value("${open-meteo.http.read-timeout:PT5S}") Duration readTimeout,
+            @Value("${open-meteo.http.connection-ttl:PT5M}") Duration connectionTtl) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(connectionTtl))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient upstreamHttpClient(
+            PoolingHttpClientConnectionManager upstreamConnectionManager,
+            @Value("${open-meteo.http.read-timeout:PT5S}") Duration readTimeout,
+            @Value("${open-meteo.http.connection-request-timeout:PT2S}") Duration connectionRequestTimeout,
+            @Value("${open-meteo.http.idle-timeout:PT30S}") Duration idleTimeout) {
+        return HttpClients.custom()
+                .setConnectionManager(upstreamConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(connectionRequestTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleTimeout))
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
+    public RestTemplate restTemplate(RestTemplateBuilder builder, CloseableHttpClient upstreamHttpClient) {
         return builder
-                .connectTimeout(Duration.ofSeconds(5))
-                .readTimeout(Duration.ofSeconds(5))
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(upstreamHttpClient))
                 .build();
     }
+
+    @Bean
+    public MeterBinder upstreamConnectionPoolMetrics(PoolingHttpClientConnectionManager upstreamConnectionManager) {
+        return registry -> {
+            registerPoolGauge(registry, upstreamConnectionManager, "leased", PoolStats::getLeased);
+            registerPoolGauge(registry, upstreamConnectionManager, "pending", PoolStats::getPending);
+            registerPoolGauge(registry, upstreamConnectionManager, "idle", PoolStats::getAvailable);
+            registerPoolGauge(registry, upstreamConnectionManager, "max", PoolStats::getMax);
+        };
+    }
+
+    private static void registerPoolGauge(MeterRegistry registry,
+                                          PoolingHttpClientConnectionManager connectionManager,
+                                          String name,
+                                          ToDoubleFunction<PoolStats> value) {
+        Gauge.builder("http.client.pool." + name, connectionManager, manager -> value.applyAsDouble(manager.getTotalStats()))
+                .description("Upstream HTTP connection pool " + name + " connections")
+                .register(registry);
+    }
 }
@@ -0,0 +1,73 @@
+package com.example.theweatherapp.config;
+
+import com.example.theweatherapp.client.Bulkhead;
+import com.example.theweatherapp.client.CircuitBreaker;
+import com.example.theweatherapp.client.RateLimitBudget;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Circuit breaker, bulkhead and rate limit budget guarding the Open-Meteo client. The circuit state
+ * is published as {@code weather.upstream.circuit.state} (0 closed, 1 open, 2 half-open), the
+ * number of calls holding a bulkhead permit as {@code weather.upstream.bulkhead.active} and the
+ * tokens left per quota as {@code weather.upstream.budget.remaining}.
+ */
+@Configuration
+public class UpstreamResilienceConfig {
+
+    @Bean
+    public CircuitBreaker upstreamCircuitBreaker(
+            @Value("${open-meteo.circuit-breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${open-meteo.circuit-breaker.open-duration:PT30S}") Duration openDuration,
+            Clock clock) {
+        return new CircuitBreaker(failureThreshold, openDuration, clock);
+    }
+
+    @Bean
+    public Bulkhead upstreamBulkhead(
+            @Value("${open-meteo.bulkhead.max-concurrent-calls:50}") int maxConcurrentCalls,
+            @Value("${open-meteo.bulkhead.max-wait:PT0.5S}") Duration maxWait) {
+        return new Bulkhead(maxConcurrentCalls, maxWait);
+    }
+
+    @Bean
+    public RateLimitBudget upstreamRateLimitBudget(
+            @Value("${open-meteo.rate-limit.enabled:true}") boolean enabled,
+            @Value("${open-meteo.rate-limit.quotas:600/PT1M,5000/PT1H,10000/P1D}") List<String> quotas,
+            @Value("${open-meteo.rate-limit.burst:0.2}") double burst,
+            @Value("${open-meteo.rate-limit.background-reserve:0.5}") double backgroundReserve,
+            @Value("${open-meteo.rate-limit.max-wait:PT0.5S}") Duration maxWait,
+            Clock clock) {
+        if (!enabled) {
+            return RateLimitBudget.unlimited();
+        }
+        return new RateLimitBudget(quotas.stream().map(RateLimitBudget.Quota::parse).toList(),
+                burst, backgroundReserve, maxWait, clock);
+    }
+
+    @Bean
+    public MeterBinder upstreamResilienceMetrics(CircuitBreaker upstreamCircuitBreaker, Bulkhead upstreamBulkhead,
+                                                 RateLimitBudget upstreamRateLimitBudget) {
+        return registry -> {
+            for (RateLimitBudget.Quota quota : upstreamRateLimitBudget.quotas()) {
+                Gauge.builder("weather.upstream.budget.remaining", upstreamRateLimitBudget, budget -> budget.remaining(quota))
+                        .description("Upstream calls left in the rate limit budget, negative while callers wait for it to refill")
+                        .tag("window", quota.window().toString())
+                        .register(registry);
+            }
+            Gauge.builder("weather.upstream.circuit.state", upstreamCircuitBreaker, breaker -> breaker.state().ordinal())
+                    .description("Upstream circuit breaker state: 0 closed, 1 open, 2 half-open")
+                    .register(registry);
+            Gauge.builder("weather.upstream.bulkhead.active", upstreamBulkhead, Bulkhead::activeCalls)
+                    .description("Upstream calls currently holding a bulkhead permit")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.theweatherapp.controller;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.List;
+
+/**
+ * Response encodings offered by the single-location forecast endpoints.
+ */
+public enum ForecastFormat {
+
+    JSON(MediaType.APPLICATION_JSON),
+    CBOR(MediaType.APPLICATION_CBOR);
+
+    private final MediaType mediaType;
+
+    ForecastFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Picks the format the client prefers according to its {@code Accept} header, by quality and
+     * then specificity. Falls back to JSON when nothing matches or no header was sent.
+     */
+    public static ForecastFormat negotiate(String[] acceptHeaders) {
+        if (acceptHeaders == null) {
+            return JSON;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(List.of(acceptHeaders));
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(accepted);
+        accepted.sort((a, b) -> Double.compare(b.getQualityValue(), a.getQualityValue()));
+        for (MediaType mediaType : accepted) {
+            for (ForecastFormat format : values()) {
+                if (mediaType.getQualityValue() > 0 && mediaType.includes(format.mediaType)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+}
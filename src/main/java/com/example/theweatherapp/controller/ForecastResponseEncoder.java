@@ -0,0 +1,153 @@
+package com.example.theweatherapp.controller;
+
+import com.example.theweatherapp.cache.RepresentationCache;
+import com.example.theweatherapp.dto.DailyForecastDto;
+import com.example.theweatherapp.dto.DailySolarYieldDto;
+import com.example.theweatherapp.dto.HourlySolarYieldDto;
+import com.example.theweatherapp.dto.SolarYieldDto;
+import com.example.theweatherapp.dto.WeeklyForecastSummaryDto;
+import com.example.theweatherapp.service.ForecastResult;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes forecasts as JSON or CBOR, optionally gzip-compressed, through a
+ * {@link RepresentationCache}, so repeated requests for the same forecast version reuse the
+ * encoded bytes. CBOR carries the same values as JSON in a positional layout: every record is an
+ * array of its fields in declaration order instead of a map keyed by field name, and doubles that
+ * fit a float without loss are written as one.
+ */
+@Component
+public class ForecastResponseEncoder {
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+    private final boolean compressionEnabled;
+    private final int compressionMinSize;
+
+    public ForecastResponseEncoder(ObjectMapper objectMapper,
+                                   @Value("${forecast.representation.compression.enabled:true}") boolean compressionEnabled,
+                                   @Value("${forecast.representation.compression.min-size:512}") int compressionMinSize) {
+        this.jsonMapper = objectMapper;
+        this.cborMapper = objectMapper.copyWith(CBORFactory.builder()
+                        .enable(CBORGenerator.Feature.WRITE_MINIMAL_INTS)
+                        .enable(CBORGenerator.Feature.WRITE_MINIMAL_DOUBLES)
+                        .build())
+                .addMixIn(DailyForecastDto.class, Positional.class)
+                .addMixIn(WeeklyForecastSummaryDto.class, Positional.class)
+                .addMixIn(SolarYieldDto.class, Positional.class)
+                .addMixIn(DailySolarYieldDto.class, Positional.class)
+                .addMixIn(HourlySolarYieldDto.class, Positional.class);
+        this.compressionEnabled = compressionEnabled;
+        this.compressionMinSize = compressionMinSize;
+    }
+
+    public record EncodedForecast(byte[] body, boolean gzipped) {
+    }
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    private interface Positional {
+    }
+
+    /**
+     * Whether a response to a client sending {@code acceptEncoding} may be gzip-compressed: when
+     * {@code gzip} is listed with a non-zero quality or, if it is not listed, {@code *} is.
+     */
+    public boolean shouldCompress(String acceptEncoding) {
+        if (!compressionEnabled || acceptEncoding == null) {
+            return false;
+        }
+        double gzip = -1;
+        double any = -1;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = Math.max(gzip, quality(parts));
+            } else if (name.equals("*")) {
+                any = quality(parts);
+            }
+        }
+        return (gzip >= 0 ? gzip : any) > 0;
+    }
+
+    /**
+     * The {@code q} parameter among the {@code ;}-separated {@code parts} of a content coding, 1 when
+     * there is none and 0 when it does not parse.
+     */
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.length() > 1 && Character.toLowerCase(parameter.charAt(0)) == 'q'
+                    && parameter.substring(1).trim().startsWith("=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(parameter.indexOf('=') + 1).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Whether {@link #encode} would gzip the body of {@code result}, if that can be told without
+     * encoding it: always when {@code compress} is off, otherwise once the uncompressed body is in
+     * {@code cache}. Returns {@code null} when the body has to be encoded to find out.
+     */
+    public Boolean gzippedIfKnown(RepresentationCache cache, String name, ForecastResult<?> result,
+                                  ForecastFormat format, boolean compress) {
+        if (!compress) {
+            return false;
+        }
+        byte[] body = cache.getIfPresent(key(name, result, format));
+        return body != null ? body.length >= compressionMinSize : null;
+    }
+
+    /**
+     * Returns the encoded body of {@code result} for resource {@code name}, kept in {@code cache}.
+     * With {@code compress} the body is gzipped when the encoding is at least {@code min-size} bytes.
+     */
+    public EncodedForecast encode(RepresentationCache cache, String name, ForecastResult<?> result,
+                                  ForecastFormat format, boolean compress) {
+        String key = key(name, result, format);
+        byte[] body = cache.get(key, () -> serialize(result.forecast(), format));
+        if (!compress || body.length < compressionMinSize) {
+            return new EncodedForecast(body, false);
+        }
+        return new EncodedForecast(cache.get(key + ":gzip", () -> gzip(body)), true);
+    }
+
+    private static String key(String name, ForecastResult<?> result, ForecastFormat format) {
+        return name + ":" + result.version() + ":" + format;
+    }
+
+    private byte[] serialize(Object forecast, ForecastFormat format) {
+        try {
+            return (format == ForecastFormat.CBOR ? cborMapper : jsonMapper).writeValueAsBytes(forecast);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode forecast as " + format, e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -1,17 +1,38 @@
 package com.example.theweatherapp.controller;
 
+import com.example.theweatherapp.cache.RepresentationCache;
+import com.example.theweatherapp.dto.BatchForecastRequestDto;
+import com.example.theweatherapp.dto.BatchForecastResultDto;
 import com.example.theweatherapp.dto.DailyForecastDto;
+import com.example.theweatherapp.dto.LocationDto;
 import com.example.theweatherapp.dto.WeeklyForecastSummaryDto;
+import com.example.theweatherapp.service.ForecastResult;
+import com.example.theweatherapp.service.ForecastStreamService;
+import com.example.theweatherapp.service.SolarYieldService;
 import com.example.theweatherapp.service.WeatherForecastService;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/forecast")
@@ -20,19 +41,146 @@ import java.util.List;
 @CrossOrigin("https://theweatherapp-2xy1.onrender.com/")
 public class WeatherForecastController {
 
+    /**
+     * Set on single-location responses served past their TTL; batch results carry {@code stale} instead.
+     */
+    static final String STALE_HEADER = "X-Forecast-Stale";
+
+    /**
+     * Distance in kilometres between the requested coordinates and the grid point whose forecast is
+     * served, which may be a nearby cached one.
+     */
+    static final String RESOLUTION_HEADER = "X-Forecast-Resolution-Km";
+
+    private static final String DEFAULT_PEAK_POWER = "2.5";
+    private static final String DEFAULT_PERFORMANCE_RATIO = "0.8";
+
     private final WeatherForecastService weatherForecastService;
+    private final SolarYieldService solarYieldService;
+    private final ForecastStreamService forecastStreamService;
+    private final ForecastResponseEncoder responseEncoder;
+    private final RepresentationCache representationCache;
+    @Qualifier("solarRepresentationCache")
+    private final RepresentationCache solarRepresentationCache;
+    private final Clock clock;
 
     @GetMapping("/daily")
-    public ResponseEntity<List<DailyForecastDto>> getDailyForecast(
+    public ResponseEntity<byte[]> getDailyForecast(
             @RequestParam @Valid @DecimalMin("-90.0") @DecimalMax("90.0") Double latitude,
-            @RequestParam @Valid @DecimalMin("-180.0") @DecimalMax("180.0") Double longitude) {
-        return ResponseEntity.ok(weatherForecastService.getDailyForecast(latitude, longitude));
+            @RequestParam @Valid @DecimalMin("-180.0") @DecimalMax("180.0") Double longitude,
+            WebRequest request) {
+        return toResponse("daily", weatherForecastService.getDailyForecast(latitude, longitude), request);
     }
 
     @GetMapping("/summary")
-    public ResponseEntity<WeeklyForecastSummaryDto> getWeeklySummary(
+    public ResponseEntity<byte[]> getWeeklySummary(
+            @RequestParam @Valid @DecimalMin("-90.0") @DecimalMax("90.0") Double latitude,
+            @RequestParam @Valid @DecimalMin("-180.0") @DecimalMax("180.0") Double longitude,
+            WebRequest request) {
+        return toResponse("summary", weatherForecastService.getWeeklySummary(latitude, longitude), request);
+    }
+
+    @GetMapping("/solar")
+    public ResponseEntity<byte[]> getSolarYield(
             @RequestParam @Valid @DecimalMin("-90.0") @DecimalMax("90.0") Double latitude,
-            @RequestParam @Valid @DecimalMin("-180.0") @DecimalMax("180.0") Double longitude) {
-        return ResponseEntity.ok(weatherForecastService.getWeeklySummary(latitude, longitude));
+            @RequestParam @Valid @DecimalMin("-180.0") @DecimalMax("180.0") Double longitude,
+            @RequestParam(defaultValue = DEFAULT_PEAK_POWER) @Valid @DecimalMin(value = "0.0", inclusive = false) @DecimalMax("1000.0") Double peakPower,
+            @RequestParam(defaultValue = DEFAULT_PERFORMANCE_RATIO) @Valid @DecimalMin(value = "0.0", inclusive = false) @DecimalMax("1.0") Double performanceRatio,
+            @RequestParam(defaultValue = "false") boolean hourly,
+            WebRequest request) {
+        // Only the default panel is worth keeping: any other parameters would add a body per distinct value
+        boolean defaultPanel = peakPower.equals(Double.valueOf(DEFAULT_PEAK_POWER))
+                && performanceRatio.equals(Double.valueOf(DEFAULT_PERFORMANCE_RATIO));
+        return toResponse(defaultPanel ? solarRepresentationCache : RepresentationCache.NONE,
+                "solar:" + peakPower + ":" + performanceRatio + ":" + hourly,
+                solarYieldService.getSolarYield(latitude, longitude, peakPower, performanceRatio, hourly), request);
+    }
+
+    /**
+     * Server-Sent Events stream of the daily forecasts of up to 20 locations, given as repeated
+     * {@code latitude}/{@code longitude} pairs. Each location's forecast is sent when the stream
+     * opens and again whenever it changes.
+     */
+    @GetMapping(path = "/daily/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDailyForecasts(
+            @RequestParam @Size(min = 1, max = 20) List<@DecimalMin("-90.0") @DecimalMax("90.0") Double> latitude,
+            @RequestParam @Size(min = 1, max = 20) List<@DecimalMin("-180.0") @DecimalMax("180.0") Double> longitude)
+            throws MissingServletRequestParameterException {
+        if (latitude.size() != longitude.size()) {
+            throw new MissingServletRequestParameterException(latitude.size() < longitude.size() ? "latitude" : "longitude", "Double");
+        }
+        List<LocationDto> locations = new ArrayList<>(latitude.size());
+        for (int i = 0; i < latitude.size(); i++) {
+            locations.add(new LocationDto(latitude.get(i), longitude.get(i)));
+        }
+        return forecastStreamService.subscribe(locations);
+    }
+
+    @PostMapping("/daily/batch")
+    public ResponseEntity<List<BatchForecastResultDto<List<DailyForecastDto>>>> getDailyForecasts(
+            @RequestBody @Valid BatchForecastRequestDto request) {
+        return ResponseEntity.ok(weatherForecastService.getDailyForecasts(request.locations()));
+    }
+
+    @PostMapping("/summary/batch")
+    public ResponseEntity<List<BatchForecastResultDto<WeeklyForecastSummaryDto>>> getWeeklySummaries(
+            @RequestBody @Valid BatchForecastRequestDto request) {
+        return ResponseEntity.ok(weatherForecastService.getWeeklySummaries(request.locations()));
+    }
+
+    private ResponseEntity<byte[]> toResponse(String name, ForecastResult<?> result, WebRequest request) {
+        return toResponse(representationCache, name, result, request);
+    }
+
+    /**
+     * Encodes the forecast in the format negotiated from {@code Accept} (JSON or CBOR), gzipped
+     * when the client accepts it, reusing bytes already encoded for the same forecast version in {@code cache}.
+     * The response is tagged with a strong ETag of the forecast version and representation, and a
+     * {@code max-age} of the time left until the data expires. The tag only says gzip when the body
+     * actually is gzipped, which for gzip-accepting clients is known once the body was encoded.
+     * From then on, and always for other clients, a matching {@code If-None-Match} gets a 304
+     * without the forecast being computed or encoded.
+     */
+    private ResponseEntity<byte[]> toResponse(RepresentationCache cache, String name, ForecastResult<?> result,
+                                              WebRequest request) {
+        ForecastFormat format = ForecastFormat.negotiate(request.getHeaderValues(HttpHeaders.ACCEPT));
+        boolean compress = responseEncoder.shouldCompress(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        ForecastResponseEncoder.EncodedForecast encoded = null;
+        Boolean gzipped = responseEncoder.gzippedIfKnown(cache, name, result, format, compress);
+        if (gzipped == null) {
+            encoded = responseEncoder.encode(cache, name, result, format, compress);
+            gzipped = encoded.gzipped();
+        }
+        String eTag = "\"" + result.version() + "-" + format.name().toLowerCase() + (gzipped ? "-gzip" : "") + "\"";
+        long maxAge = result.stale() ? 0 : Math.max(0, Duration.between(clock.instant(), result.expiresAt()).toSeconds());
+        CacheControl cacheControl = CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePublic();
+        HttpHeaders resolution = new HttpHeaders();
+        if (!Double.isNaN(result.distanceKm())) {
+            resolution.set(RESOLUTION_HEADER, String.format(Locale.ROOT, "%.2f", result.distanceKm()));
+        }
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(cacheControl)
+                    .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                    .headers(resolution)
+                    .build();
+        }
+        if (encoded == null) {
+            encoded = responseEncoder.encode(cache, name, result, format, compress);
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .headers(resolution)
+                .contentType(format.mediaType());
+        if (encoded.gzipped()) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        if (result.stale()) {
+            response.header(STALE_HEADER, "true");
+        }
+        return response.body(encoded.body());
     }
 }
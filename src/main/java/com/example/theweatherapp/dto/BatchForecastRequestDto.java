@@ -0,0 +1,13 @@
+package com.example.theweatherapp.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BatchForecastRequestDto(
+        @NotEmpty @Size(max = 500) List<@NotNull @Valid LocationDto> locations
+) {
+}
@@ -0,0 +1,17 @@
+package com.example.theweatherapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Result for a single location of a batch request: either {@code forecast} or {@code error} is set.
+ * {@code stale} is {@code true} when the forecast is a last-known-good copy past its TTL.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchForecastResultDto<T>(
+        double latitude,
+        double longitude,
+        T forecast,
+        String error,
+        Boolean stale
+) {
+}
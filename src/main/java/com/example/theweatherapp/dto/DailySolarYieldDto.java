@@ -0,0 +1,14 @@
+package com.example.theweatherapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+public record DailySolarYieldDto(
+        String date,
+        double energy, //in kWh
+        double sunshineHours,
+        double peakIrradiance, //in W/m²
+        @JsonInclude(JsonInclude.Include.NON_NULL) List<HourlySolarYieldDto> hours
+) {
+}
@@ -0,0 +1,9 @@
+package com.example.theweatherapp.dto;
+
+public record HourlySolarYieldDto(
+        String time,
+        double irradiance, //in W/m²
+        double sunshineSeconds,
+        double energy //in kWh
+) {
+}
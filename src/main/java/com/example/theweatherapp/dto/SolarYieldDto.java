@@ -0,0 +1,12 @@
+package com.example.theweatherapp.dto;
+
+import java.util.List;
+
+public record SolarYieldDto(
+        double peakPower, //in kWp
+        double performanceRatio,
+        double totalEnergy, //in kWh
+        double averageDailyEnergy, //in kWh
+        List<DailySolarYieldDto> days
+) {
+}
@@ -1,23 +1,41 @@
 package com.example.theweatherapp.exception;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.constraints.Size;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
+@Slf4j
 @RestControllerAdvice
+@RequiredArgsConstructor
 public class GlobalExceptionHandler {
 
+    private final MeterRegistry meterRegistry;
+
+    private void countError(String type) {
+        meterRegistry.counter("weather.errors", "type", type).increment();
+    }
+
     @ExceptionHandler(WeatherApiException.class)
     public ResponseEntity<String> handleWeatherApiException(WeatherApiException e) {
+        log.warn("Weather API error: {}", e.getMessage(), e.getCause());
+        countError("weather_api");
         return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
     }
 
     @ExceptionHandler(WeatherDataException.class)
     public ResponseEntity<String> handleWeatherDataException(WeatherDataException e) {
+        log.warn("Invalid weather data: {}", e.getMessage(), e.getCause());
+        countError("weather_data");
         return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
     }
 
@@ -32,12 +50,35 @@ public class GlobalExceptionHandler {
     }
 
     @ExceptionHandler(ConstraintViolationException.class)
-    public ResponseEntity<String> handleConstraintViolationException() {
+    public ResponseEntity<String> handleConstraintViolationException(ConstraintViolationException e) {
+        boolean panelViolation = e.getConstraintViolations().stream()
+                .map(violation -> violation.getPropertyPath().toString())
+                .anyMatch(path -> path.endsWith("peakPower") || path.endsWith("performanceRatio"));
+        if (panelViolation) {
+            return ResponseEntity.badRequest().body("Peak power must be between 0 and 1000 kWp, performance ratio must be between 0 and 1.");
+        }
+        boolean sizeViolation = e.getConstraintViolations().stream()
+                .anyMatch(violation -> violation.getConstraintDescriptor().getAnnotation() instanceof Size);
+        if (sizeViolation) {
+            return ResponseEntity.badRequest().body("A stream can follow 1 to 20 locations.");
+        }
         return ResponseEntity.badRequest().body("Latitude must be between -90 and 90, longitude must be between -180 and 180.");
     }
 
+    @ExceptionHandler(MethodArgumentNotValidException.class)
+    public ResponseEntity<String> handleMethodArgumentNotValidException() {
+        return ResponseEntity.badRequest().body("Request must contain 1 to 500 locations with latitude between -90 and 90 and longitude between -180 and 180.");
+    }
+
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<String> handleHttpMessageNotReadableException() {
+        return ResponseEntity.badRequest().body("Malformed request body.");
+    }
+
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<String> handleException() {
+    public ResponseEntity<String> handleException(Exception e) {
+        log.error("Unexpected error", e);
+        countError("unexpected");
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Unexpected error occurred.");
     }
 }
@@ -4,4 +4,8 @@ public class WeatherApiException extends RuntimeException {
     public WeatherApiException(String message) {
         super(message);
     }
+
+    public WeatherApiException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -1,23 +1,29 @@
 package com.example.theweatherapp.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.Data;
 
-import java.util.List;
-
+/**
+ * Columnar daily forecast: one primitive array per Open-Meteo column, all indexed by day.
+ * Missing values are stored as {@link Double#NaN} or {@link #MISSING_CODE}.
+ */
 @Data
+@JsonDeserialize(using = DailyDataDeserializer.class)
 public class DailyData {
 
+    public static final int MISSING_CODE = -1;
+
     @JsonProperty("time")
-    private List<String> dates; //format: RRRR-MM-DD
+    private String[] dates; //format: RRRR-MM-DD
     @JsonProperty("weather_code")
-    private List<Integer> weatherCodes;
+    private int[] weatherCodes;
     @JsonProperty("temperature_2m_min")
-    private List<Double> tempMin; //in Celsius
+    private double[] tempMin; //in Celsius
     @JsonProperty("temperature_2m_max")
-    private List<Double> tempMax; //in Celsius
+    private double[] tempMax; //in Celsius
     @JsonProperty("surface_pressure_mean")
-    private List<Double> pressure; //in hPa
+    private double[] pressure; //in hPa
     @JsonProperty("sunshine_duration")
-    private List<Double> sunshineDuration; //in seconds
+    private double[] sunshineDuration; //in seconds
 }
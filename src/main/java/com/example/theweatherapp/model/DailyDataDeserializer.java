@@ -0,0 +1,44 @@
+package com.example.theweatherapp.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Streams the Open-Meteo {@code daily} object straight into primitive arrays, without building
+ * boxed lists or a tree first. Unknown columns are skipped.
+ */
+public class DailyDataDeserializer extends JsonDeserializer<DailyData> {
+
+    @Override
+    public DailyData deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (!parser.isExpectedStartObjectToken()) {
+            return context.reportInputMismatch(DailyData.class, "Expected daily data object");
+        }
+        DailyData dailyData = new DailyData();
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "time" -> dailyData.setDates(JsonArrays.readStrings(parser));
+                case "weather_code" -> dailyData.setWeatherCodes(JsonArrays.readInts(parser, DailyData.MISSING_CODE));
+                case "temperature_2m_min" -> dailyData.setTempMin(JsonArrays.readDoubles(parser));
+                case "temperature_2m_max" -> dailyData.setTempMax(JsonArrays.readDoubles(parser));
+                case "surface_pressure_mean" -> dailyData.setPressure(JsonArrays.readDoubles(parser));
+                case "sunshine_duration" -> dailyData.setSunshineDuration(JsonArrays.readDoubles(parser));
+                default -> parser.skipChildren();
+            }
+        }
+        return dailyData;
+    }
+}
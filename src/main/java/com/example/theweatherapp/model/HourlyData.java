@@ -0,0 +1,21 @@
+package com.example.theweatherapp.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.Data;
+
+/**
+ * Columnar hourly forecast: one primitive array per Open-Meteo column, all indexed by hour.
+ * Missing values are stored as {@link Double#NaN}.
+ */
+@Data
+@JsonDeserialize(using = HourlyDataDeserializer.class)
+public class HourlyData {
+
+    @JsonProperty("time")
+    private String[] times; //format: RRRR-MM-DDTHH:MM, local time of the location
+    @JsonProperty("shortwave_radiation")
+    private double[] shortwaveRadiation; //in W/m², mean over the preceding hour
+    @JsonProperty("sunshine_duration")
+    private double[] sunshineDuration; //in seconds
+}
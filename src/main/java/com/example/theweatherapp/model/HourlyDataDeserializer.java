@@ -0,0 +1,41 @@
+package com.example.theweatherapp.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Streams the Open-Meteo {@code hourly} object straight into primitive arrays, like
+ * {@link DailyDataDeserializer}. Unknown columns are skipped.
+ */
+public class HourlyDataDeserializer extends JsonDeserializer<HourlyData> {
+
+    @Override
+    public HourlyData deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (!parser.isExpectedStartObjectToken()) {
+            return context.reportInputMismatch(HourlyData.class, "Expected hourly data object");
+        }
+        HourlyData hourlyData = new HourlyData();
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "time" -> hourlyData.setTimes(JsonArrays.readStrings(parser));
+                case "shortwave_radiation" -> hourlyData.setShortwaveRadiation(JsonArrays.readDoubles(parser));
+                case "sunshine_duration" -> hourlyData.setSunshineDuration(JsonArrays.readDoubles(parser));
+                default -> parser.skipChildren();
+            }
+        }
+        return hourlyData;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.theweatherapp.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads Open-Meteo column arrays from a parser positioned on {@code START_ARRAY} into primitive
+ * arrays trimmed to size. Null elements become {@code NaN}, the given missing value or {@code null}.
+ */
+final class JsonArrays {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private JsonArrays() {
+    }
+
+    static double[] readDoubles(JsonParser parser) throws IOException {
+        double[] values = new double[INITIAL_CAPACITY];
+        int size = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = token == JsonToken.VALUE_NULL ? Double.NaN : parser.getDoubleValue();
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    static int[] readInts(JsonParser parser, int missing) throws IOException {
+        int[] values = new int[INITIAL_CAPACITY];
+        int size = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = token == JsonToken.VALUE_NULL ? missing : parser.getIntValue();
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    static String[] readStrings(JsonParser parser) throws IOException {
+        String[] values = new String[INITIAL_CAPACITY];
+        int size = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = token == JsonToken.VALUE_NULL ? null : parser.getText();
+        }
+        return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+}
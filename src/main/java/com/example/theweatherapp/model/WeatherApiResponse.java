@@ -1,8 +1,19 @@
 package com.example.theweatherapp.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+/**
+ * Open-Meteo forecast response. Only the requested sections are present: {@code daily} for the
+ * daily forecast, {@code hourly} for the solar yield forecast.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record WeatherApiResponse(
-        @JsonProperty("daily") DailyData dailyData
+        @JsonProperty("daily") DailyData dailyData,
+        @JsonProperty("hourly") HourlyData hourlyData
 ) {
+
+    public WeatherApiResponse(DailyData dailyData) {
+        this(dailyData, null);
+    }
 }
@@ -0,0 +1,108 @@
+package com.example.theweatherapp.service;
+
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.GridCell;
+import com.example.theweatherapp.cache.HotEntry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Refreshes popular cache entries shortly before they expire, so readers of hot cells never pay
+ * the upstream latency. Every {@code interval} it picks cells read at least {@code min-accesses}
+ * times that expire within {@code refresh-ahead}, takes at most {@code max-per-interval} of the
+ * most popular ones and spreads their refreshes with random jitter across the interval. Access
+ * counts are halved each cycle, so cells that stop being read are left to expire.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "forecast.refresh.enabled", havingValue = "true", matchIfMissing = true)
+public class ForecastRefreshScheduler {
+
+    private final ForecastCache forecastCache;
+    private final WeatherForecastService weatherForecastService;
+    private final TaskScheduler taskScheduler;
+    private final Clock clock;
+    private final Duration interval;
+    private final Duration refreshAhead;
+    private final long minAccesses;
+    private final int maxPerInterval;
+    private final Set<GridCell> scheduled = ConcurrentHashMap.newKeySet();
+    private final Counter refreshed;
+    private final Counter failed;
+
+    public ForecastRefreshScheduler(ForecastCache forecastCache,
+                                    WeatherForecastService weatherForecastService,
+                                    TaskScheduler taskScheduler,
+                                    Clock clock,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${forecast.refresh.interval:PT1M}") Duration interval,
+                                    @Value("${forecast.refresh.refresh-ahead:PT5M}") Duration refreshAhead,
+                                    @Value("${forecast.refresh.min-accesses:3}") long minAccesses,
+                                    @Value("${forecast.refresh.max-per-interval:50}") int maxPerInterval) {
+        this.forecastCache = forecastCache;
+        this.weatherForecastService = weatherForecastService;
+        this.taskScheduler = taskScheduler;
+        this.clock = clock;
+        this.interval = interval;
+        this.refreshAhead = refreshAhead;
+        this.minAccesses = minAccesses;
+        this.maxPerInterval = maxPerInterval;
+        this.refreshed = Counter.builder("weather.cache.refreshes").tag("outcome", "success").register(meterRegistry);
+        this.failed = Counter.builder("weather.cache.refreshes").tag("outcome", "error").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${forecast.refresh.interval:PT1M}",
+            initialDelayString = "${forecast.refresh.interval:PT1M}")
+    public void scheduleRefreshes() {
+        Instant now = clock.instant();
+        List<HotEntry> hot = forecastCache.hotEntriesExpiringBefore(now.plus(refreshAhead), minAccesses);
+        forecastCache.decayAccessCounts();
+
+        int budget = maxPerInterval;
+        for (HotEntry entry : hot) {
+            if (budget == 0) {
+                break;
+            }
+            if (!scheduled.add(entry.cell())) {
+                continue;
+            }
+            budget--;
+            taskScheduler.schedule(() -> refresh(entry.cell()), now.plus(jitter(now, entry.expiresAt())));
+        }
+    }
+
+    /**
+     * Random delay within the interval, capped at half the time left so the refresh still lands
+     * before the entry expires.
+     */
+    private Duration jitter(Instant now, Instant expiresAt) {
+        long window = Math.min(interval.toMillis(), Duration.between(now, expiresAt).toMillis() / 2);
+        return window > 0 ? Duration.ofMillis(ThreadLocalRandom.current().nextLong(window)) : Duration.ZERO;
+    }
+
+    private void refresh(GridCell cell) {
+        try {
+            weatherForecastService.refresh(cell);
+            refreshed.increment();
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.warn("Refresh-ahead of {} failed, entry will expire normally: {}", cell, e.getMessage());
+        } finally {
+            scheduled.remove(cell);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.theweatherapp.service;
+
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * A forecast together with the version and freshness of the upstream data it is computed from.
+ * {@code stale} is set when it was served past its TTL, either while being revalidated or because
+ * upstream is failing. {@code distanceKm} is how far the requested coordinates are from the grid
+ * point the forecast was fetched for, {@code NaN} when not known. The forecast itself is computed
+ * on first access, so a caller that only needs the version, e.g. to answer a conditional request,
+ * does not pay for it.
+ */
+public final class ForecastResult<T> {
+
+    private final Supplier<T> computation;
+    private final String version;
+    private final Instant fetchedAt;
+    private final Instant expiresAt;
+    private final boolean stale;
+    private final double distanceKm;
+    private T forecast;
+
+    public ForecastResult(Supplier<T> computation, String version, Instant fetchedAt, Instant expiresAt, boolean stale) {
+        this(computation, version, fetchedAt, expiresAt, stale, Double.NaN);
+    }
+
+    public ForecastResult(Supplier<T> computation, String version, Instant fetchedAt, Instant expiresAt, boolean stale,
+                          double distanceKm) {
+        this.computation = computation;
+        this.version = version;
+        this.fetchedAt = fetchedAt;
+        this.expiresAt = expiresAt;
+        this.stale = stale;
+        this.distanceKm = distanceKm;
+    }
+
+    public T forecast() {
+        if (forecast == null) {
+            forecast = computation.get();
+        }
+        return forecast;
+    }
+
+    public String version() {
+        return version;
+    }
+
+    public Instant fetchedAt() {
+        return fetchedAt;
+    }
+
+    public Instant expiresAt() {
+        return expiresAt;
+    }
+
+    public boolean stale() {
+        return stale;
+    }
+
+    public double distanceKm() {
+        return distanceKm;
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.theweatherapp.service;
+
+import com.example.theweatherapp.cache.CachedForecast;
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.GridCell;
+import com.example.theweatherapp.dto.BatchForecastResultDto;
+import com.example.theweatherapp.dto.DailyForecastDto;
+import com.example.theweatherapp.dto.LocationDto;
+import com.example.theweatherapp.exception.WeatherApiException;
+import com.example.theweatherapp.exception.WeatherDataException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes daily forecasts to Server-Sent Events subscribers. A subscriber follows a list of
+ * locations: it is sent the current forecast of each right away, and afterwards an event only when
+ * the forecast of a location's grid cell differs from the one last pushed for that cell.
+ * <p>
+ * Updates are driven by the forecast cache. Whatever puts a subscribed cell into it (a reader, a
+ * batch or the refresh-ahead scheduler, which keeps subscribed cells warm as long as someone
+ * follows them) leads to one comparison per cell, shared by all its subscribers. Idle subscribers
+ * hold an open connection but no thread; a periodic comment keeps intermediaries from closing it
+ * and finds clients that went away.
+ * <p>
+ * Events are queued per subscriber and written on the executor, one subscriber at a time, so a
+ * slow or stalled client only holds up its own stream and never the cell's lock, its other
+ * subscribers or the thread that loaded the forecast.
+ */
+@Slf4j
+@Service
+public class ForecastStreamService implements MeterBinder {
+
+    static final String UPDATE_EVENT = "daily";
+    static final String ERROR_EVENT = "error";
+
+    private final WeatherForecastService weatherForecastService;
+    private final ForecastCache forecastCache;
+    private final Executor executor;
+    private final double gridSize;
+    private final Duration timeout;
+    private final Map<GridCell, CellSubscribers> cells = new ConcurrentHashMap<>();
+    private final Map<SseEmitter, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final LongAdder pushed = new LongAdder();
+    private final LongAdder unchanged = new LongAdder();
+
+    public ForecastStreamService(WeatherForecastService weatherForecastService,
+                                 ForecastCache forecastCache,
+                                 @Qualifier("applicationTaskExecutor") Executor executor,
+                                 @Value("${forecast.cache.grid-size:0.01}") double gridSize,
+                                 @Value("${forecast.stream.timeout:PT1H}") Duration timeout) {
+        this.weatherForecastService = weatherForecastService;
+        this.forecastCache = forecastCache;
+        this.executor = executor;
+        this.gridSize = gridSize;
+        this.timeout = timeout;
+        forecastCache.addUpdateListener(cached -> {
+            if (cells.containsKey(cached.cell())) {
+                executor.execute(() -> publish(cached));
+            }
+        });
+    }
+
+    /**
+     * Opens a stream following {@code locations}. It completes after {@code forecast.stream.timeout},
+     * after which clients are expected to reconnect.
+     */
+    public SseEmitter subscribe(List<LocationDto> locations) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        subscribe(locations, emitter);
+        return emitter;
+    }
+
+    /**
+     * Follows {@code locations} on an emitter created by the caller. The current forecasts are
+     * sent on the application task executor, so the request thread is released at once.
+     */
+    public void subscribe(List<LocationDto> locations, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        List<Subscription> subscriptions = subscriber.subscriptions;
+        for (LocationDto location : locations) {
+            subscriptions.add(new Subscription(subscriber, location, GridCell.of(location.latitude(), location.longitude(), gridSize)));
+        }
+        subscribers.put(emitter, subscriber);
+        emitter.onCompletion(() -> unsubscribe(emitter));
+        emitter.onTimeout(() -> unsubscribe(emitter));
+        emitter.onError(e -> unsubscribe(emitter));
+        for (Subscription subscription : subscriptions) {
+            cells.compute(subscription.cell(), (cell, cellSubscribers) -> {
+                CellSubscribers updated = cellSubscribers != null ? cellSubscribers : new CellSubscribers();
+                if (updated.subscriptions.add(subscription)) {
+                    forecastCache.watch(cell);
+                }
+                return updated;
+            });
+        }
+        executor.execute(() -> subscriptions.forEach(this::sendCurrent));
+    }
+
+    /**
+     * Sends every subscriber a comment line, dropping subscribers whose connection is gone.
+     * Subscribers still busy writing earlier events are skipped.
+     */
+    @Scheduled(fixedDelayString = "${forecast.stream.heartbeat:PT30S}",
+            initialDelayString = "${forecast.stream.heartbeat:PT30S}")
+    public void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers.values()) {
+            if (subscriber.outbox.isEmpty()) {
+                enqueue(subscriber, SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+
+    private void unsubscribe(SseEmitter emitter) {
+        Subscriber subscriber = subscribers.remove(emitter);
+        if (subscriber == null) {
+            return;
+        }
+        subscriber.outbox.clear();
+        for (Subscription subscription : subscriber.subscriptions) {
+            cells.computeIfPresent(subscription.cell(), (cell, cellSubscribers) -> {
+                if (cellSubscribers.subscriptions.remove(subscription)) {
+                    forecastCache.unwatch(cell);
+                }
+                return cellSubscribers.subscriptions.isEmpty() ? null : cellSubscribers;
+            });
+        }
+    }
+
+    /**
+     * Sends a new subscriber the current forecast of its location. The first subscriber of a cell
+     * records it as the last pushed forecast; later ones get the last pushed forecast when it is at
+     * least as recent. Loading the forecast may itself have pushed it, in which case nothing more
+     * is sent. The forecast is always loaded for the subscribed cell itself, never served from a
+     * nearby one, so the cell gets an entry whose refreshes reach the subscriber.
+     */
+    private void sendCurrent(Subscription subscription) {
+        ForecastResult<List<DailyForecastDto>> result;
+        try {
+            result = weatherForecastService.getExactDailyForecast(subscription.location().latitude(), subscription.location().longitude());
+        } catch (WeatherApiException | WeatherDataException e) {
+            enqueue(subscription.subscriber(), SseEmitter.event()
+                    .name(ERROR_EVENT)
+                    .data(new BatchForecastResultDto<>(subscription.location().latitude(), subscription.location().longitude(),
+                            null, e.getMessage(), null), MediaType.APPLICATION_JSON));
+            return;
+        }
+        CellSubscribers cellSubscribers = cells.get(subscription.cell());
+        if (cellSubscribers == null) {
+            return;
+        }
+        synchronized (cellSubscribers) {
+            if (cellSubscribers.fetchedAt == null) {
+                cellSubscribers.update(result.version(), result.forecast(), result.fetchedAt(), result.stale());
+            } else if (!result.fetchedAt().isAfter(cellSubscribers.fetchedAt)) {
+                send(subscription, cellSubscribers);
+                return;
+            }
+            send(subscription, result.version(), result.forecast(), result.fetchedAt(), result.stale());
+        }
+    }
+
+    private void publish(CachedForecast cached) {
+        CellSubscribers cellSubscribers = cells.get(cached.cell());
+        if (cellSubscribers == null) {
+            return;
+        }
+        List<DailyForecastDto> forecast = weatherForecastService.toDailyForecast(cached.response());
+        synchronized (cellSubscribers) {
+            if (cellSubscribers.fetchedAt != null && !cached.fetchedAt().isAfter(cellSubscribers.fetchedAt)) {
+                return;
+            }
+            boolean changed = !forecast.equals(cellSubscribers.forecast) || cellSubscribers.stale;
+            cellSubscribers.update(cached.version(), forecast, cached.fetchedAt(), false);
+            if (!changed) {
+                unchanged.increment();
+                return;
+            }
+            pushed.increment();
+            for (Subscription subscription : cellSubscribers.subscriptions) {
+                send(subscription, cellSubscribers);
+            }
+        }
+    }
+
+    private void send(Subscription subscription, CellSubscribers cellSubscribers) {
+        send(subscription, cellSubscribers.version, cellSubscribers.forecast, cellSubscribers.fetchedAt, cellSubscribers.stale);
+    }
+
+    /**
+     * Queues a forecast unless the subscriber already got this fetch or a newer one. Called with
+     * the cell's lock held, so the events of a cell are queued in order; nothing is written here.
+     */
+    private void send(Subscription subscription, String version, List<DailyForecastDto> forecast,
+                      Instant fetchedAt, boolean stale) {
+        if (subscription.sentFetchedAt != null && !fetchedAt.isAfter(subscription.sentFetchedAt)) {
+            return;
+        }
+        subscription.sentFetchedAt = fetchedAt;
+        enqueue(subscription.subscriber(), SseEmitter.event()
+                .id(version)
+                .name(UPDATE_EVENT)
+                .data(new BatchForecastResultDto<>(subscription.location().latitude(), subscription.location().longitude(),
+                        forecast, null, stale ? Boolean.TRUE : null), MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * Adds an event to the subscriber's outbox and has the executor write it unless a write of
+     * that subscriber is already under way, which then picks it up.
+     */
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        subscriber.outbox.add(event);
+        if (subscriber.draining.compareAndSet(false, true)) {
+            executor.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        do {
+            SseEmitter.SseEventBuilder event;
+            while ((event = subscriber.outbox.poll()) != null) {
+                try {
+                    subscriber.emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("Dropping stream subscriber: {}", e.getMessage());
+                    unsubscribe(subscriber.emitter);
+                }
+            }
+            subscriber.draining.set(false);
+        } while (!subscriber.outbox.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("weather.stream.subscribers", subscribers, Map::size)
+                .description("Open forecast streams")
+                .register(registry);
+        Gauge.builder("weather.stream.cells", cells, Map::size)
+                .description("Grid cells followed by at least one stream")
+                .register(registry);
+        FunctionCounter.builder("weather.stream.updates", pushed, LongAdder::sum)
+                .tag("result", "pushed")
+                .register(registry);
+        FunctionCounter.builder("weather.stream.updates", unchanged, LongAdder::sum)
+                .tag("result", "unchanged")
+                .register(registry);
+    }
+
+    /**
+     * One stream: its subscriptions and the events queued for it, written by at most one thread
+     * at a time.
+     */
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final List<Subscription> subscriptions = new ArrayList<>();
+        private final Queue<SseEmitter.SseEventBuilder> outbox = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    /**
+     * One location followed by one stream, with the fetch time of the forecast last sent to it.
+     */
+    private static final class Subscription {
+
+        private final Subscriber subscriber;
+        private final LocationDto location;
+        private final GridCell cell;
+        private Instant sentFetchedAt;
+
+        private Subscription(Subscriber subscriber, LocationDto location, GridCell cell) {
+            this.subscriber = subscriber;
+            this.location = location;
+            this.cell = cell;
+        }
+
+        private Subscriber subscriber() {
+            return subscriber;
+        }
+
+        private LocationDto location() {
+            return location;
+        }
+
+        private GridCell cell() {
+            return cell;
+        }
+    }
+
+    /**
+     * Subscriptions of one grid cell and the forecast last pushed to them. Guarded by its own lock,
+     * which also orders the events sent for the cell.
+     */
+    private static final class CellSubscribers {
+
+        private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+        private String version;
+        private List<DailyForecastDto> forecast;
+        private Instant fetchedAt;
+        private boolean stale;
+
+        private void update(String version, List<DailyForecastDto> forecast, Instant fetchedAt, boolean stale) {
+            this.version = version;
+            this.forecast = forecast;
+            this.fetchedAt = fetchedAt;
+            this.stale = stale;
+        }
+    }
+}
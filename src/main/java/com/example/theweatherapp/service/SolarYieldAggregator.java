@@ -0,0 +1,112 @@
+package com.example.theweatherapp.service;
+
+import com.example.theweatherapp.dto.DailySolarYieldDto;
+import com.example.theweatherapp.dto.HourlySolarYieldDto;
+import com.example.theweatherapp.dto.SolarYieldDto;
+import com.example.theweatherapp.exception.WeatherDataException;
+import com.example.theweatherapp.model.HourlyData;
+import com.example.theweatherapp.util.DecimalRounding;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Derives hourly, daily and weekly solar yield from one hourly dataset in a single pass over its
+ * primitive arrays. The energy of an hour is {@code peakPower * irradiance / 1000 W/m² *
+ * performanceRatio}, where irradiance is the mean shortwave radiation over that hour. Missing
+ * hours count as no yield.
+ */
+public final class SolarYieldAggregator {
+
+    private static final double STANDARD_IRRADIANCE = 1000.0;
+    private static final int DATE_LENGTH = "RRRR-MM-DD".length();
+
+    private SolarYieldAggregator() {
+    }
+
+    public static SolarYieldDto aggregate(HourlyData hourlyData, double peakPower, double performanceRatio,
+                                          boolean includeHours) {
+        String[] times = hourlyData.getTimes();
+        double[] radiation = hourlyData.getShortwaveRadiation();
+        double[] sunshine = hourlyData.getSunshineDuration();
+        int hours = times.length;
+        double energyPerIrradiance = peakPower * performanceRatio / STANDARD_IRRADIANCE;
+
+        List<DailySolarYieldDto> days = new ArrayList<>(hours / 24 + 1);
+        List<HourlySolarYieldDto> dayHours = includeHours ? new ArrayList<>(24) : null;
+        double totalEnergy = 0;
+        double dayEnergy = 0;
+        double daySunshine = 0;
+        double dayPeak = 0;
+        int dayStart = 0;
+        for (int i = 0; i < hours; i++) {
+            if (i > dayStart && !times[i].regionMatches(0, times[dayStart], 0, DATE_LENGTH)) {
+                days.add(toDay(times[dayStart], dayEnergy, daySunshine, dayPeak, dayHours));
+                totalEnergy += dayEnergy;
+                dayEnergy = 0;
+                daySunshine = 0;
+                dayPeak = 0;
+                dayStart = i;
+                dayHours = includeHours ? new ArrayList<>(24) : null;
+            }
+            double irradiance = Double.isNaN(radiation[i]) ? 0 : Math.max(0, radiation[i]);
+            double sunshineSeconds = Double.isNaN(sunshine[i]) ? 0 : sunshine[i];
+            double energy = irradiance * energyPerIrradiance;
+            dayEnergy += energy;
+            daySunshine += sunshineSeconds;
+            dayPeak = Math.max(dayPeak, irradiance);
+            if (dayHours != null) {
+                dayHours.add(new HourlySolarYieldDto(times[i], irradiance, sunshineSeconds,
+                        DecimalRounding.halfUp(energy, 3)));
+            }
+        }
+        if (hours > 0) {
+            days.add(toDay(times[dayStart], dayEnergy, daySunshine, dayPeak, dayHours));
+            totalEnergy += dayEnergy;
+        }
+
+        return new SolarYieldDto(
+                peakPower,
+                performanceRatio,
+                DecimalRounding.halfUp(totalEnergy, 2),
+                days.isEmpty() ? 0 : DecimalRounding.halfUp(totalEnergy / days.size(), 2),
+                days
+        );
+    }
+
+    /**
+     * Rejects hourly data without timestamps or with radiation or sunshine columns shorter than
+     * the timestamps.
+     */
+    public static void validate(HourlyData hourlyData) {
+        if (hourlyData == null) {
+            throw new WeatherDataException("Weather response is missing hourly data");
+        }
+        String[] times = hourlyData.getTimes();
+        if (times == null || times.length == 0) {
+            throw new WeatherDataException("Weather response is missing time information");
+        }
+        for (String time : times) {
+            if (time == null || time.length() < DATE_LENGTH) {
+                throw new WeatherDataException("Weather response is missing time information");
+            }
+        }
+        if (hourlyData.getShortwaveRadiation() == null || hourlyData.getShortwaveRadiation().length < times.length) {
+            throw new WeatherDataException("Weather response is missing radiation data");
+        }
+        if (hourlyData.getSunshineDuration() == null || hourlyData.getSunshineDuration().length < times.length) {
+            throw new WeatherDataException("Weather response is missing sunshine duration data");
+        }
+    }
+
+    private static DailySolarYieldDto toDay(String firstHour, double energy, double sunshineSeconds, double peak,
+                                            List<HourlySolarYieldDto> hours) {
+        return new DailySolarYieldDto(
+                firstHour.substring(0, DATE_LENGTH),
+                DecimalRounding.halfUp(energy, 2),
+                DecimalRounding.halfUp(sunshineSeconds / 3600, 1),
+                peak,
+                hours
+        );
+    }
+}
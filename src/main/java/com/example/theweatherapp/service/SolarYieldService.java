@@ -0,0 +1,64 @@
+package com.example.theweatherapp.service;
+
+import com.example.theweatherapp.cache.CachedForecast;
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.GridCell;
+import com.example.theweatherapp.client.OpenMeteoClient;
+import com.example.theweatherapp.dto.SolarYieldDto;
+import com.example.theweatherapp.exception.WeatherApiException;
+import com.example.theweatherapp.exception.WeatherDataException;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Solar yield forecasts for caller-supplied panel parameters. One hourly dataset per grid cell is
+ * fetched and cached; hourly, daily and weekly yields for any panel are derived from it by
+ * {@link SolarYieldAggregator}, so no granularity or panel needs an upstream call of its own.
+ */
+@Service
+@RequiredArgsConstructor
+public class SolarYieldService {
+
+    private final OpenMeteoClient openMeteoClient;
+    @Qualifier("hourlyForecastCache")
+    private final ForecastCache hourlyForecastCache;
+    @Value("${forecast.cache.grid-size:0.01}")
+    private double gridSize;
+    @Value("${forecast.cache.stale-if-error:PT6H}")
+    private Duration staleIfError;
+    @Value("${forecast.cache.nearby-radius-km:0}")
+    private double nearbyRadiusKm;
+
+    public ForecastResult<SolarYieldDto> getSolarYield(double lat, double lon, double peakPower,
+                                                       double performanceRatio, boolean includeHours) {
+        GridCell cell = GridCell.of(lat, lon, gridSize);
+        CachedForecast cached = nearbyRadiusKm > 0 ? hourlyForecastCache.getNearby(lat, lon, cell, nearbyRadiusKm) : null;
+        boolean stale = false;
+        try {
+            if (cached == null) {
+                cached = hourlyForecastCache.get(cell, () -> fetchFromApi(cell));
+            }
+        } catch (WeatherApiException | WeatherDataException e) {
+            cached = hourlyForecastCache.getIfStale(cell, staleIfError);
+            if (cached == null) {
+                throw e;
+            }
+            stale = true;
+        }
+        WeatherApiResponse response = cached.response();
+        return new ForecastResult<>(
+                () -> SolarYieldAggregator.aggregate(response.hourlyData(), peakPower, performanceRatio, includeHours),
+                cached.version(), cached.fetchedAt(), cached.expiresAt(), stale, cached.cell().distanceKm(lat, lon));
+    }
+
+    private WeatherApiResponse fetchFromApi(GridCell cell) {
+        WeatherApiResponse response = openMeteoClient.fetchHourly(cell.latitude(), cell.longitude());
+        SolarYieldAggregator.validate(response.hourlyData());
+        return response;
+    }
+}
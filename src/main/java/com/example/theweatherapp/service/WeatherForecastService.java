@@ -1,22 +1,39 @@
 package com.example.theweatherapp.service;
 
+import com.example.theweatherapp.cache.CachedForecast;
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.GridCell;
+import com.example.theweatherapp.client.OpenMeteoClient;
+import com.example.theweatherapp.client.RateLimitBudget;
+import com.example.theweatherapp.dto.BatchForecastResultDto;
 import com.example.theweatherapp.dto.DailyForecastDto;
+import com.example.theweatherapp.dto.LocationDto;
 import com.example.theweatherapp.dto.WeeklyForecastSummaryDto;
 import com.example.theweatherapp.exception.WeatherApiException;
 import com.example.theweatherapp.exception.WeatherDataException;
 import com.example.theweatherapp.model.DailyData;
 import com.example.theweatherapp.model.WeatherApiResponse;
+import com.example.theweatherapp.util.DecimalRounding;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class WeatherForecastService {
@@ -25,93 +42,340 @@ public class WeatherForecastService {
     private static final double PANEL_EFFICIENCY = 0.2;
     private static final int FORECAST_DAYS = 7;
     private static final int DECIMAL_PLACES_SCALE = 2;
-    private final RestTemplate restTemplate;
-    @Value("${open-meteo.api.url}")
-    private String apiUrl;
+    private final OpenMeteoClient openMeteoClient;
+    private final ForecastCache forecastCache;
+    @Qualifier("applicationTaskExecutor")
+    private final Executor upstreamExecutor;
+    @Value("${forecast.cache.grid-size:0.01}")
+    private double gridSize;
+    @Value("${open-meteo.api.max-locations-per-request:100}")
+    private int maxLocationsPerRequest;
+    @Value("${forecast.cache.stale-while-revalidate:PT2M}")
+    private Duration staleWhileRevalidate;
+    @Value("${forecast.cache.stale-if-error:PT6H}")
+    private Duration staleIfError;
+    @Value("${forecast.cache.nearby-radius-km:0}")
+    private double nearbyRadiusKm;
+    private final Set<GridCell> revalidating = ConcurrentHashMap.newKeySet();
 
     private void validateWeatherResponse(WeatherApiResponse response) {
         if (response.dailyData() == null) {
             throw new WeatherDataException("Weather response is missing daily data");
         }
         DailyData dailyData = response.dailyData();
-        if (dailyData.getDates() == null || dailyData.getDates().isEmpty()) {
+        if (dailyData.getDates() == null || dailyData.getDates().length == 0) {
             throw new WeatherDataException("Weather response is missing date information");
         }
-        int expectedSize = Math.min(dailyData.getDates().size(), FORECAST_DAYS);
+        int expectedSize = Math.min(dailyData.getDates().length, FORECAST_DAYS);
 
-        if (dailyData.getWeatherCodes() == null || dailyData.getWeatherCodes().size() < expectedSize) {
+        if (!isComplete(dailyData.getWeatherCodes(), expectedSize)) {
             throw new WeatherDataException("Weather response is missing weather codes");
         }
-        if (dailyData.getTempMin() == null || dailyData.getTempMin().size() < expectedSize) {
+        if (!isComplete(dailyData.getTempMin(), expectedSize)) {
             throw new WeatherDataException("Weather response is missing minimum temperatures");
         }
-        if (dailyData.getTempMax() == null || dailyData.getTempMax().size() < expectedSize) {
+        if (!isComplete(dailyData.getTempMax(), expectedSize)) {
             throw new WeatherDataException("Weather response is missing maximum temperatures");
         }
-        if (dailyData.getSunshineDuration() == null || dailyData.getSunshineDuration().size() < expectedSize) {
+        if (!isComplete(dailyData.getSunshineDuration(), expectedSize)) {
             throw new WeatherDataException("Weather response is missing sunshine duration data");
         }
-        if (dailyData.getPressure() == null || dailyData.getPressure().size() < expectedSize) {
+        if (!isComplete(dailyData.getPressure(), expectedSize)) {
             throw new WeatherDataException("Weather response is missing pressure data");
         }
     }
 
-    private WeatherApiResponse fetchWeather(double lat, double lon) {
-        String url = String.format(
-                "%s?latitude=%.4f&longitude=%.4f&daily=weather_code,temperature_2m_max,temperature_2m_min,surface_pressure_mean,sunshine_duration&timezone=auto",
-                apiUrl, lat, lon
-        );
+    private static boolean isComplete(double[] values, int expectedSize) {
+        if (values == null || values.length < expectedSize) {
+            return false;
+        }
+        for (double value : values) {
+            if (Double.isNaN(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isComplete(int[] values, int expectedSize) {
+        if (values == null || values.length < expectedSize) {
+            return false;
+        }
+        for (int value : values) {
+            if (value == DailyData.MISSING_CODE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serves a cell from cache, loading it from upstream on a miss. With
+     * {@code nearby-radius-km} set, the fresh entry of the nearest cell within that distance is
+     * served instead of loading the requested one. An entry that expired less
+     * than {@code stale-while-revalidate} ago is served as is while it is refreshed in the
+     * background; if the upstream load fails, an entry that expired less than
+     * {@code stale-if-error} ago is served instead of the error.
+     */
+    private <T> ForecastResult<T> fetchWeather(double lat, double lon, Function<WeatherApiResponse, T> mapper) {
+        return fetchWeather(lat, lon, mapper, nearbyRadiusKm);
+    }
+
+    private <T> ForecastResult<T> fetchWeather(double lat, double lon, Function<WeatherApiResponse, T> mapper,
+                                               double radiusKm) {
+        GridCell cell = GridCell.of(lat, lon, gridSize);
+        if (radiusKm > 0) {
+            CachedForecast nearby = forecastCache.getNearby(lat, lon, cell, radiusKm);
+            if (nearby != null) {
+                return toResult(nearby, false, lat, lon, mapper);
+            }
+        }
+        CachedForecast stale = forecastCache.getIfStale(cell, staleWhileRevalidate);
+        if (stale != null) {
+            revalidate(cell);
+            return toResult(stale, true, lat, lon, mapper);
+        }
+        try {
+            CachedForecast loaded = forecastCache.get(cell,
+                    () -> fetchFromApi(cell, RateLimitBudget.Priority.USER), false);
+            return toResult(loaded, false, lat, lon, mapper);
+        } catch (WeatherApiException | WeatherDataException e) {
+            stale = forecastCache.getIfStale(cell, staleIfError);
+            if (stale == null) {
+                throw e;
+            }
+            log.warn("Serving stale forecast for {} after upstream failure: {}", cell, e.getMessage());
+            return toResult(stale, true, lat, lon, mapper);
+        }
+    }
+
+    private static <T> ForecastResult<T> toResult(CachedForecast cached, boolean stale, double lat, double lon,
+                                                  Function<WeatherApiResponse, T> mapper) {
+        return new ForecastResult<>(() -> mapper.apply(cached.response()), cached.version(),
+                cached.fetchedAt(), cached.expiresAt(), stale, cached.cell().distanceKm(lat, lon));
+    }
+
+    private void revalidate(GridCell cell) {
+        if (!revalidating.add(cell)) {
+            return;
+        }
+        upstreamExecutor.execute(() -> {
+            try {
+                refresh(cell);
+            } catch (RuntimeException e) {
+                log.warn("Revalidation of {} failed: {}", cell, e.getMessage());
+            } finally {
+                revalidating.remove(cell);
+            }
+        });
+    }
+
+    /**
+     * Fetches a cell from upstream and replaces its cache entry, whether or not it has expired.
+     * Runs at background priority, so it is skipped rather than compete with users for a tight
+     * upstream budget.
+     */
+    public void refresh(GridCell cell) {
+        forecastCache.refresh(cell, () -> fetchFromApi(cell, RateLimitBudget.Priority.BACKGROUND));
+    }
+
+    private WeatherApiResponse fetchFromApi(GridCell cell, RateLimitBudget.Priority priority) {
+        WeatherApiResponse response = openMeteoClient.fetchDaily(cell.latitude(), cell.longitude(), priority);
+        validateWeatherResponse(response);
+        return response;
+    }
+
+    /**
+     * Resolves every location of a batch: cached cells are served directly, the remaining cells
+     * are fetched in chunks of {@code maxLocationsPerRequest}, one upstream call per chunk. Chunks
+     * are fetched concurrently on the application task executor, which runs on virtual threads
+     * when {@code spring.threads.virtual.enabled} is set, and go through the cache's single-flight
+     * slots, so cells a concurrent request is already loading are not fetched twice. Stale entries
+     * are used the same way as in {@link #fetchWeather}. A failure only affects the locations it
+     * belongs to, which get an error entry instead of a forecast.
+     */
+    private <T> List<BatchForecastResultDto<T>> fetchWeatherBatch(List<LocationDto> locations,
+                                                                   Function<WeatherApiResponse, T> mapper) {
+        Map<GridCell, WeatherApiResponse> responses = new ConcurrentHashMap<>();
+        Map<GridCell, RuntimeException> failures = new ConcurrentHashMap<>();
+        Set<GridCell> missing = new LinkedHashSet<>();
+        Set<GridCell> stale = new HashSet<>();
+        for (LocationDto location : locations) {
+            GridCell cell = GridCell.of(location.latitude(), location.longitude(), gridSize);
+            if (responses.containsKey(cell) || missing.contains(cell)) {
+                continue;
+            }
+            CachedForecast cached = forecastCache.getIfPresent(cell);
+            if (cached == null) {
+                cached = forecastCache.getIfStale(cell, staleWhileRevalidate);
+                if (cached != null) {
+                    stale.add(cell);
+                    revalidate(cell);
+                }
+            }
+            if (cached != null) {
+                responses.put(cell, cached.response());
+            } else {
+                missing.add(cell);
+            }
+        }
+
+        List<GridCell> toFetch = new ArrayList<>(missing);
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int from = 0; from < toFetch.size(); from += maxLocationsPerRequest) {
+            List<GridCell> chunk = toFetch.subList(from, Math.min(from + maxLocationsPerRequest, toFetch.size()));
+            chunks.add(CompletableFuture
+                    .runAsync(() -> forecastCache.getAll(chunk, cells -> fetchChunk(cells, failures), failures, false)
+                            .forEach((cell, cached) -> responses.put(cell, cached.response())), upstreamExecutor)
+                    .exceptionally(e -> {
+                        log.warn("Fetching a batch chunk of {} locations failed", chunk.size(), e);
+                        chunk.forEach(cell -> failures.putIfAbsent(cell, new WeatherApiException("Error fetching weather data")));
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).join();
+        for (GridCell cell : failures.keySet()) {
+            CachedForecast cached = forecastCache.getIfStale(cell, staleIfError);
+            if (cached != null) {
+                responses.put(cell, cached.response());
+                stale.add(cell);
+            }
+        }
+
+        List<BatchForecastResultDto<T>> results = new ArrayList<>(locations.size());
+        for (LocationDto location : locations) {
+            GridCell cell = GridCell.of(location.latitude(), location.longitude(), gridSize);
+            WeatherApiResponse response = responses.get(cell);
+            results.add(response != null
+                    ? new BatchForecastResultDto<>(location.latitude(), location.longitude(), mapper.apply(response), null,
+                            stale.contains(cell) ? Boolean.TRUE : null)
+                    : new BatchForecastResultDto<>(location.latitude(), location.longitude(), null, errorMessage(failures.get(cell)), null));
+        }
+        return results;
+    }
+
+    /**
+     * Fetches one chunk in a single upstream call and returns the valid responses. Every other cell
+     * gets its failure recorded, whether the whole call failed or only its own payload.
+     */
+    private Map<GridCell, WeatherApiResponse> fetchChunk(List<GridCell> chunk, Map<GridCell, RuntimeException> failures) {
+        List<WeatherApiResponse> fetched;
         try {
-            WeatherApiResponse response = restTemplate.getForObject(url, WeatherApiResponse.class);
-            if (response == null) {
-                throw new WeatherApiException("Weather API Error");
+            fetched = openMeteoClient.fetchDaily(chunk);
+        } catch (RuntimeException e) {
+            chunk.forEach(cell -> failures.put(cell, e));
+            return Map.of();
+        }
+        Map<GridCell, WeatherApiResponse> responses = new HashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            GridCell cell = chunk.get(i);
+            WeatherApiResponse response = fetched.get(i);
+            try {
+                if (response == null) {
+                    throw new WeatherApiException("Weather API Error");
+                }
+                validateWeatherResponse(response);
+                responses.put(cell, response);
+            } catch (RuntimeException e) {
+                failures.put(cell, e);
             }
-            validateWeatherResponse(response);
-            return response;
-        } catch (RestClientException e) {
-            throw new WeatherApiException("Error fetching weather data");
         }
+        return responses;
+    }
+
+    /**
+     * Message of a failed batch location. Failures other than the service's own exceptions, or
+     * none recorded at all, get a generic message instead of leaking internals.
+     */
+    private static String errorMessage(RuntimeException failure) {
+        return failure instanceof WeatherApiException || failure instanceof WeatherDataException
+                ? failure.getMessage()
+                : "Error fetching weather data";
     }
 
     private double calculateGeneratedEnergy(double sunshineDuration) {
         if(sunshineDuration < 0){
             return 0;
         }
-        return BigDecimal.valueOf(PANEL_POWER * (sunshineDuration / 3600) * PANEL_EFFICIENCY)
-                .setScale(DECIMAL_PLACES_SCALE, RoundingMode.HALF_UP)
-                .doubleValue();
+        return DecimalRounding.halfUp(PANEL_POWER * (sunshineDuration / 3600) * PANEL_EFFICIENCY, DECIMAL_PLACES_SCALE);
+    }
+
+
+    public ForecastResult<List<DailyForecastDto>> getDailyForecast(double lat, double lon) {
+        return fetchWeather(lat, lon, this::toDailyForecast);
+    }
+
+    /**
+     * Like {@link #getDailyForecast}, but always serves the location's own grid cell, never a
+     * nearby one, for callers that go on following that cell.
+     */
+    public ForecastResult<List<DailyForecastDto>> getExactDailyForecast(double lat, double lon) {
+        return fetchWeather(lat, lon, this::toDailyForecast, 0);
     }
 
+    public ForecastResult<WeeklyForecastSummaryDto> getWeeklySummary(double lat, double lon) {
+        return fetchWeather(lat, lon, this::toWeeklySummary);
+    }
+
+    public List<BatchForecastResultDto<List<DailyForecastDto>>> getDailyForecasts(List<LocationDto> locations) {
+        return fetchWeatherBatch(locations, this::toDailyForecast);
+    }
 
-    public List<DailyForecastDto> getDailyForecast(double lat, double lon) {
-        WeatherApiResponse response = fetchWeather(lat, lon);
+    public List<BatchForecastResultDto<WeeklyForecastSummaryDto>> getWeeklySummaries(List<LocationDto> locations) {
+        return fetchWeatherBatch(locations, this::toWeeklySummary);
+    }
+
+    /**
+     * Maps an upstream response to the {@code /daily} body.
+     */
+    public List<DailyForecastDto> toDailyForecast(WeatherApiResponse response) {
         DailyData dailyData = response.dailyData();
-        List<DailyForecastDto> forecasts = new ArrayList<>();
+        List<DailyForecastDto> forecasts = new ArrayList<>(FORECAST_DAYS);
         for (int i = 0; i < FORECAST_DAYS; i++) {
             forecasts.add(new DailyForecastDto(
-                    dailyData.getDates().get(i),
-                    dailyData.getWeatherCodes().get(i),
-                    dailyData.getTempMin().get(i),
-                    dailyData.getTempMax().get(i),
-                    calculateGeneratedEnergy(dailyData.getSunshineDuration().get(i))
+                    dailyData.getDates()[i],
+                    dailyData.getWeatherCodes()[i],
+                    dailyData.getTempMin()[i],
+                    dailyData.getTempMax()[i],
+                    calculateGeneratedEnergy(dailyData.getSunshineDuration()[i])
             ));
         }
         return forecasts;
     }
 
-    public WeeklyForecastSummaryDto getWeeklySummary(double lat, double lon) {
-        WeatherApiResponse response = fetchWeather(lat, lon);
+    private WeeklyForecastSummaryDto toWeeklySummary(WeatherApiResponse response) {
         DailyData dailyData = response.dailyData();
+        double[] pressure = dailyData.getPressure();
+        double[] sunshineDuration = dailyData.getSunshineDuration();
+        double[] tempMin = dailyData.getTempMin();
+        double[] tempMax = dailyData.getTempMax();
+        int[] weatherCodes = dailyData.getWeatherCodes();
 
-        double averagePressure = dailyData.getPressure().stream().mapToDouble(Double::doubleValue).average().orElse(0);
-        double averageSunshineDuration = dailyData.getSunshineDuration().stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        int days = Math.min(Math.min(pressure.length, sunshineDuration.length),
+                Math.min(Math.min(tempMin.length, tempMax.length), weatherCodes.length));
+        double pressureSum = 0;
+        double sunshineSum = 0;
+        double weeklyTempMin = Double.POSITIVE_INFINITY;
+        double weeklyTempMax = Double.NEGATIVE_INFINITY;
+        int rainyDays = 0;
+        for (int i = 0; i < days; i++) {
+            pressureSum += pressure[i];
+            sunshineSum += sunshineDuration[i];
+            weeklyTempMin = Math.min(weeklyTempMin, tempMin[i]);
+            weeklyTempMax = Math.max(weeklyTempMax, tempMax[i]);
+            if (weatherCodes[i] >= 60 && weatherCodes[i] <= 99) {
+                rainyDays++;
+            }
+        }
+        double averagePressure = days > 0 ? pressureSum / days : 0;
+        double averageSunshineDuration = days > 0 ? sunshineSum / days : 0;
 
         return new WeeklyForecastSummaryDto(
-                BigDecimal.valueOf(averagePressure).setScale(1, RoundingMode.HALF_UP).doubleValue(),
-                BigDecimal.valueOf(averageSunshineDuration).setScale(1, RoundingMode.HALF_UP).doubleValue(),
-                dailyData.getTempMin().stream().mapToDouble(Double::doubleValue).min().orElse(Double.NaN),
-                dailyData.getTempMax().stream().mapToDouble(Double::doubleValue).max().orElse(Double.NaN),
-                dailyData.getWeatherCodes().stream().filter(code -> code >= 60 && code <= 99).count() >= 4 ? "Z opadami" : "Bez opadów"
+                DecimalRounding.halfUp(averagePressure, 1),
+                DecimalRounding.halfUp(averageSunshineDuration, 1),
+                days > 0 ? weeklyTempMin : Double.NaN,
+                days > 0 ? weeklyTempMax : Double.NaN,
+                rainyDays >= 4 ? "Z opadami" : "Bez opadów"
         );
     }
 }
@@ -0,0 +1,46 @@
+package com.example.theweatherapp.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Allocation-free equivalent of {@code BigDecimal.valueOf(value).setScale(scale, HALF_UP).doubleValue()}.
+ * <p>
+ * The value is scaled and rounded in double arithmetic. Only when the scaled value lies too close
+ * to a .5 tie for double precision to decide the direction does it fall back to {@link BigDecimal},
+ * so results are identical to the BigDecimal path for every input.
+ */
+public final class DecimalRounding {
+
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8};
+    private static final double MAX_FAST_PATH_MAGNITUDE = 1e8;
+    private static final double TIE_MARGIN = 1e-6;
+
+    private DecimalRounding() {
+    }
+
+    public static double halfUp(double value, int scale) {
+        if (scale < 0 || scale >= POWERS_OF_TEN.length || !Double.isFinite(value)) {
+            return bigDecimalHalfUp(value, scale);
+        }
+        double power = POWERS_OF_TEN[scale];
+        double magnitude = Math.abs(value) * power;
+        if (magnitude >= MAX_FAST_PATH_MAGNITUDE) {
+            return bigDecimalHalfUp(value, scale);
+        }
+        double floor = Math.floor(magnitude);
+        double fraction = magnitude - floor;
+        if (Math.abs(fraction - 0.5) < TIE_MARGIN) {
+            return bigDecimalHalfUp(value, scale);
+        }
+        double rounded = (fraction > 0.5 ? floor + 1 : floor) / power;
+        if (rounded == 0) {
+            return 0.0;
+        }
+        return value < 0 ? -rounded : rounded;
+    }
+
+    private static double bigDecimalHalfUp(double value, int scale) {
+        return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP).doubleValue();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.client.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private MutableClock clock;
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2024-01-15T12:00:00Z"));
+        circuitBreaker = new CircuitBreaker(3, Duration.ofSeconds(30), clock);
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(circuitBreaker.tryAcquirePermission());
+            circuitBreaker.onFailure();
+        }
+    }
+
+    @Test
+    void shouldOpenAfterConsecutiveFailures() {
+        fail(2);
+        circuitBreaker.onSuccess();
+        fail(2);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+
+        fail(1);
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void shouldLetOneTrialCallThroughAfterOpenDuration() {
+        fail(3);
+        clock.advance(Duration.ofSeconds(30));
+
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+        assertTrue(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void shouldReopenWhenTrialCallFails() {
+        fail(3);
+        clock.advance(Duration.ofSeconds(30));
+
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        clock.advance(Duration.ofSeconds(29));
+        assertFalse(circuitBreaker.tryAcquirePermission());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.model.DailyData;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DailyDataDeserializerTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    @Test
+    void shouldDecodeColumnsIntoPrimitiveArrays() throws Exception {
+        String json = """
+                {
+                  "latitude": 52.22, "longitude": 21.0, "timezone": "Europe/Warsaw",
+                  "daily_units": {"time": "iso8601", "sunshine_duration": "s"},
+                  "daily": {
+                    "time": ["2024-01-15", "2024-01-16", "2024-01-17", "2024-01-18", "2024-01-19", "2024-01-20", "2024-01-21", "2024-01-22", "2024-01-23"],
+                    "weather_code": [0, 1, 2, 61, 63, 80, 95, 3, 45],
+                    "temperature_2m_max": [20.0, 19.0, 18.0, 21.0, 23.0, 22.0, 24.0, 17.5, 16],
+                    "temperature_2m_min": [10.0, 11.0, 9.5, 8.0, 7.0, 12.0, 13.0, 6.5, 5],
+                    "surface_pressure_mean": [1012.0, 1010.0, 1008.0, 1005.0, 1007.0, 1009.0, 1011.0, 1013.0, 1014.0],
+                    "sunshine_duration": [3600.0, 1800.0, 0.0, 5400.0, 3600.0, 7200.0, 3600.0, 0.0, 900.5],
+                    "precipitation_sum": [0.0, 0.1, 0.0, 2.5, 1.0, 0.0, 3.3, 0.0, 0.0]
+                  }
+                }
+                """;
+
+        DailyData dailyData = objectMapper.readValue(json, WeatherApiResponse.class).dailyData();
+
+        assertEquals(9, dailyData.getDates().length);
+        assertEquals("2024-01-23", dailyData.getDates()[8]);
+        assertArrayEquals(new int[]{0, 1, 2, 61, 63, 80, 95, 3, 45}, dailyData.getWeatherCodes());
+        assertEquals(16.0, dailyData.getTempMax()[8]);
+        assertEquals(5.0, dailyData.getTempMin()[8]);
+        assertEquals(1014.0, dailyData.getPressure()[8]);
+        assertEquals(900.5, dailyData.getSunshineDuration()[8]);
+    }
+
+    @Test
+    void shouldMarkNullValuesAsMissing() throws Exception {
+        String json = """
+                {"daily": {"time": ["2024-01-15", "2024-01-16"], "weather_code": [null, 3], "sunshine_duration": [120.0, null], "temperature_2m_max": null}}
+                """;
+
+        DailyData dailyData = objectMapper.readValue(json, WeatherApiResponse.class).dailyData();
+
+        assertArrayEquals(new int[]{DailyData.MISSING_CODE, 3}, dailyData.getWeatherCodes());
+        assertEquals(120.0, dailyData.getSunshineDuration()[0]);
+        assertTrue(Double.isNaN(dailyData.getSunshineDuration()[1]));
+        assertNull(dailyData.getTempMax());
+        assertNull(dailyData.getPressure());
+    }
+}
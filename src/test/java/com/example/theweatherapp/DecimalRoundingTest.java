@@ -0,0 +1,80 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.util.DecimalRounding;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Property check: {@link DecimalRounding#halfUp} must agree bit for bit with the BigDecimal HALF_UP
+ * path it replaces, over the ranges the service actually rounds and around every decimal tie.
+ */
+class DecimalRoundingTest {
+
+    private static final int SAMPLES = 1_000_000;
+
+    private static double expected(double value, int scale) {
+        return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    private static void assertSameAsBigDecimal(double value, int scale) {
+        assertEquals(Double.doubleToLongBits(expected(value, scale)),
+                Double.doubleToLongBits(DecimalRounding.halfUp(value, scale)),
+                () -> "halfUp(" + value + ", " + scale + ")");
+    }
+
+    @Test
+    void shouldMatchBigDecimalForGeneratedEnergy() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            double sunshineDuration = random.nextDouble(0, 86_400);
+            assertSameAsBigDecimal(2.5 * (sunshineDuration / 3600) * 0.2, 2);
+        }
+    }
+
+    @Test
+    void shouldMatchBigDecimalForWeeklyAverages() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < SAMPLES; i++) {
+            assertSameAsBigDecimal(random.nextDouble(300, 1100), 1);
+            assertSameAsBigDecimal(random.nextDouble(0, 86_400), 1);
+        }
+    }
+
+    @Test
+    void shouldMatchBigDecimalAroundDecimalTies() {
+        SplittableRandom random = new SplittableRandom(1234);
+        for (int scale = 0; scale <= 3; scale++) {
+            for (int i = 0; i < SAMPLES / 4; i++) {
+                long units = random.nextLong(0, 100_000_000L);
+                double tie = (units + 0.5) / Math.pow(10, scale);
+                assertSameAsBigDecimal(tie, scale);
+                assertSameAsBigDecimal(-tie, scale);
+                assertSameAsBigDecimal(Math.nextUp(tie), scale);
+                assertSameAsBigDecimal(Math.nextDown(tie), scale);
+            }
+        }
+    }
+
+    @Test
+    void shouldMatchBigDecimalAcrossMagnitudes() {
+        SplittableRandom random = new SplittableRandom(99);
+        for (int i = 0; i < SAMPLES; i++) {
+            double value = random.nextDouble(-1, 1) * Math.pow(10, random.nextInt(-6, 12));
+            assertSameAsBigDecimal(value, random.nextInt(0, 10));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.0, -0.0, 0.005, 0.015, 1.005, 2.675, 1.115, -1.005, -0.001, -0.004999, 0.125, 1008.85, 1008.95, 1e15, -1e15, Double.MIN_VALUE})
+    void shouldMatchBigDecimalForEdgeCases(double value) {
+        assertSameAsBigDecimal(value, 1);
+        assertSameAsBigDecimal(value, 2);
+    }
+}
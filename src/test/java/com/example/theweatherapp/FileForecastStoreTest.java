@@ -0,0 +1,165 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.cache.CachedForecast;
+import com.example.theweatherapp.cache.FileForecastStore;
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.GridCell;
+import com.example.theweatherapp.model.DailyData;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileForecastStoreTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-15T12:00:00Z");
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+    private final Clock clock = Clock.fixed(NOW, ZoneOffset.UTC);
+
+    @TempDir
+    private Path directory;
+
+    private static WeatherApiResponse response(double sunshine) {
+        DailyData dailyData = new DailyData();
+        dailyData.setDates(new String[]{"2024-01-15", "2024-01-16"});
+        dailyData.setWeatherCodes(new int[]{3, 61});
+        dailyData.setTempMin(new double[]{-3.1, -4.6});
+        dailyData.setTempMax(new double[]{1.4, 0.2});
+        dailyData.setPressure(new double[]{1003.4, 998.7});
+        dailyData.setSunshineDuration(new double[]{sunshine, 1523.47});
+        return new WeatherApiResponse(dailyData);
+    }
+
+    private static CachedForecast forecast(GridCell cell, double sunshine) {
+        return new CachedForecast(cell, response(sunshine), NOW, NOW.plus(Duration.ofMinutes(30)));
+    }
+
+    @Test
+    void shouldReloadSavedForecastsAfterReopening() throws IOException {
+        Path path = directory.resolve("store.log");
+        GridCell warsaw = GridCell.of(52.23, 21.01, 0.01);
+        GridCell krakow = GridCell.of(50.06, 19.94, 0.01);
+        try (FileForecastStore store = new FileForecastStore(path, objectMapper, clock, Duration.ofHours(6))) {
+            store.save(forecast(warsaw, 100.0));
+            store.save(forecast(krakow, 200.0));
+            store.save(forecast(warsaw, 300.0));
+        }
+
+        try (FileForecastStore store = new FileForecastStore(path, objectMapper, clock, Duration.ofHours(6))) {
+            CachedForecast reloaded = store.load(warsaw).orElseThrow();
+            assertEquals(300.0, reloaded.response().dailyData().getSunshineDuration()[0]);
+            assertArrayEquals(new int[]{3, 61}, reloaded.response().dailyData().getWeatherCodes());
+            assertEquals(NOW.plus(Duration.ofMinutes(30)), reloaded.expiresAt());
+            assertEquals(200.0, store.load(krakow).orElseThrow().response().dailyData().getSunshineDuration()[0]);
+            assertTrue(store.load(GridCell.of(0, 0, 0.01)).isEmpty());
+        }
+    }
+
+    @Test
+    void shouldDropTornRecordAtEndOfFile() throws IOException {
+        Path path = directory.resolve("store.log");
+        GridCell warsaw = GridCell.of(52.23, 21.01, 0.01);
+        GridCell krakow = GridCell.of(50.06, 19.94, 0.01);
+        try (FileForecastStore store = new FileForecastStore(path, objectMapper, clock, Duration.ofHours(6))) {
+            store.save(forecast(warsaw, 100.0));
+            store.save(forecast(krakow, 200.0));
+        }
+        long size = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 10);
+        }
+
+        try (FileForecastStore store = new FileForecastStore(path, objectMapper, clock, Duration.ofHours(6))) {
+            assertTrue(store.load(warsaw).isPresent());
+            assertTrue(store.load(krakow).isEmpty());
+            store.save(forecast(krakow, 250.0));
+        }
+
+        try (FileForecastStore store = new FileForecastStore(path, objectMapper, clock, Duration.ofHours(6))) {
+            assertEquals(250.0, store.load(krakow).orElseThrow().response().dailyData().getSunshineDuration()[0]);
+        }
+    }
+
+    @Test
+    void shouldKeepExpiredRecordsServableStaleThroughCompaction() throws IOException {
+        Path path = directory.resolve("store.log");
+        GridCell warsaw = GridCell.of(52.23, 21.01, 0.01);
+        GridCell krakow = GridCell.of(50.06, 19.94, 0.01);
+        GridCell gdansk = GridCell.of(54.35, 18.65, 0.01);
+        try (FileForecastStore store = new FileForecastStore(path, objectMapper, clock, Duration.ofHours(6))) {
+            store.save(new CachedForecast(krakow, response(200.0), NOW.minus(Duration.ofHours(2)), NOW.minus(Duration.ofHours(1))));
+            store.save(new CachedForecast(gdansk, response(300.0), NOW.minus(Duration.ofHours(8)), NOW.minus(Duration.ofHours(7))));
+            long size = 0;
+            while (Files.size(path) >= size) {
+                size = Files.size(path);
+                store.save(forecast(warsaw, 100.0));
+            }
+        }
+
+        try (FileForecastStore store = new FileForecastStore(path, objectMapper, clock, Duration.ofHours(6))) {
+            assertTrue(store.load(warsaw).isPresent());
+            assertEquals(200.0, store.load(krakow).orElseThrow().response().dailyData().getSunshineDuration()[0]);
+            assertTrue(store.load(gdansk).isEmpty());
+        }
+    }
+
+    @Test
+    void shouldKeepWorkingWhenCompactedLogCannotReplaceTheOldOne() throws IOException {
+        Path path = directory.resolve("store.log");
+        GridCell warsaw = GridCell.of(52.23, 21.01, 0.01);
+        GridCell krakow = GridCell.of(50.06, 19.94, 0.01);
+        AtomicInteger replaceAttempts = new AtomicInteger();
+        try (FileForecastStore store = new FileForecastStore(path, objectMapper, clock, Duration.ofHours(6)) {
+            @Override
+            protected void replace(Path compacted, Path target) throws IOException {
+                replaceAttempts.incrementAndGet();
+                throw new AtomicMoveNotSupportedException(compacted.toString(), target.toString(), "not supported");
+            }
+        }) {
+            store.save(forecast(krakow, 200.0));
+            while (replaceAttempts.get() == 0) {
+                store.save(forecast(warsaw, 100.0));
+            }
+
+            store.save(forecast(warsaw, 300.0));
+            assertEquals(300.0, store.load(warsaw).orElseThrow().response().dailyData().getSunshineDuration()[0]);
+            assertEquals(200.0, store.load(krakow).orElseThrow().response().dailyData().getSunshineDuration()[0]);
+        }
+        assertFalse(Files.exists(directory.resolve("store.log.compact")));
+    }
+
+    @Test
+    void shouldServeCacheMissesFromStoreWithoutLoading() throws IOException {
+        Path path = directory.resolve("store.log");
+        GridCell warsaw = GridCell.of(52.23, 21.01, 0.01);
+        try (FileForecastStore store = new FileForecastStore(path, objectMapper, clock, Duration.ofHours(6))) {
+            new ForecastCache(Duration.ofMinutes(30), 10, Duration.ofSeconds(5), store, clock)
+                    .get(warsaw, () -> response(100.0));
+        }
+
+        try (FileForecastStore store = new FileForecastStore(path, objectMapper, clock, Duration.ofHours(6))) {
+            ForecastCache restarted = new ForecastCache(Duration.ofMinutes(30), 10, Duration.ofSeconds(5), store, clock);
+            CachedForecast cached = restarted.get(warsaw, () -> fail("should not go upstream"));
+            assertEquals(100.0, cached.response().dailyData().getSunshineDuration()[0]);
+        }
+    }
+}
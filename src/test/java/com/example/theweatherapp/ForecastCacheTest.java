@@ -0,0 +1,397 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.cache.CacheStats;
+import com.example.theweatherapp.cache.CachedForecast;
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.ForecastStore;
+import com.example.theweatherapp.cache.GridCell;
+import com.example.theweatherapp.cache.HotEntry;
+import com.example.theweatherapp.exception.WeatherApiException;
+import com.example.theweatherapp.exception.WeatherDataException;
+import com.example.theweatherapp.model.DailyData;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastCacheTest {
+
+    private static final double GRID_SIZE = 0.01;
+
+    private MutableClock clock;
+    private ForecastCache forecastCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2024-01-15T12:00:00Z"));
+        forecastCache = new ForecastCache(Duration.ofMinutes(30), 2, Duration.ofSeconds(5), ForecastStore.NONE, clock);
+        loads = new AtomicInteger();
+    }
+
+    private WeatherApiResponse load() {
+        loads.incrementAndGet();
+        return new WeatherApiResponse(new DailyData());
+    }
+
+    @Test
+    void shouldSnapNearbyCoordinatesToSameCell() {
+        assertEquals(GridCell.of(52.2297, 21.0122, GRID_SIZE), GridCell.of(52.2301, 21.0149, GRID_SIZE));
+        assertNotEquals(GridCell.of(52.2297, 21.0122, GRID_SIZE), GridCell.of(52.2397, 21.0122, GRID_SIZE));
+        assertEquals(90.0, GridCell.of(90.0, 180.0, GRID_SIZE).latitude(), 1e-9);
+        assertEquals(180.0, GridCell.of(90.0, 180.0, GRID_SIZE).longitude(), 1e-9);
+    }
+
+    @Test
+    void shouldServeRepeatedRequestsFromCache() {
+        GridCell cell = GridCell.of(52.23, 21.01, GRID_SIZE);
+
+        forecastCache.get(cell, this::load);
+        forecastCache.get(cell, this::load);
+
+        assertEquals(1, loads.get());
+        assertEquals(new CacheStats(1, 1, 0, 1), forecastCache.stats());
+    }
+
+    @Test
+    void shouldReloadAfterTtlExpires() {
+        GridCell cell = GridCell.of(52.23, 21.01, GRID_SIZE);
+
+        forecastCache.get(cell, this::load);
+        clock.advance(Duration.ofMinutes(30));
+        forecastCache.get(cell, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldServeExpiredEntryOnlyWithinMaxStaleness() {
+        GridCell cell = GridCell.of(52.23, 21.01, GRID_SIZE);
+        forecastCache.get(cell, this::load);
+
+        assertNull(forecastCache.getIfStale(cell, Duration.ofHours(1)));
+        clock.advance(Duration.ofMinutes(45));
+        assertNotNull(forecastCache.getIfStale(cell, Duration.ofHours(1)));
+        clock.advance(Duration.ofMinutes(45));
+        assertNull(forecastCache.getIfStale(cell, Duration.ofHours(1)));
+    }
+
+    @Test
+    void shouldReadStoreOnceForStaleCheckAndLoad() {
+        GridCell stored = GridCell.of(52.23, 21.01, GRID_SIZE);
+        GridCell missing = GridCell.of(50.06, 19.94, GRID_SIZE);
+        Instant now = clock.instant();
+        CachedForecast saved = new CachedForecast(stored, new WeatherApiResponse(new DailyData()), now, now.plus(Duration.ofMinutes(30)));
+        AtomicInteger storeReads = new AtomicInteger();
+        ForecastStore store = new ForecastStore() {
+            @Override
+            public Optional<CachedForecast> load(GridCell cell) {
+                storeReads.incrementAndGet();
+                return cell.equals(stored) ? Optional.of(saved) : Optional.empty();
+            }
+
+            @Override
+            public void save(CachedForecast forecast) {
+            }
+        };
+        forecastCache = new ForecastCache(Duration.ofMinutes(30), 2, Duration.ofSeconds(5), store, clock);
+
+        assertNull(forecastCache.getIfStale(stored, Duration.ofHours(1)));
+        assertSame(saved, forecastCache.get(stored, this::load));
+        assertEquals(1, storeReads.get());
+
+        assertNull(forecastCache.getIfStale(missing, Duration.ofHours(1)));
+        forecastCache.get(missing, this::load, false);
+        assertEquals(2, storeReads.get());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldCheckStoreAgainAfterStaleCheckWhoseLoadFailed() {
+        GridCell cell = GridCell.of(52.23, 21.01, GRID_SIZE);
+        AtomicInteger storeReads = new AtomicInteger();
+        ForecastStore store = new ForecastStore() {
+            @Override
+            public Optional<CachedForecast> load(GridCell key) {
+                storeReads.incrementAndGet();
+                return Optional.empty();
+            }
+
+            @Override
+            public void save(CachedForecast forecast) {
+            }
+        };
+        forecastCache = new ForecastCache(Duration.ofMinutes(30), 2, Duration.ofSeconds(5), store, clock);
+
+        assertNull(forecastCache.getIfStale(cell, Duration.ofHours(1)));
+        assertThrows(WeatherApiException.class, () -> forecastCache.get(cell, () -> {
+            throw new WeatherApiException("upstream down");
+        }, false));
+        forecastCache.get(cell, this::load);
+        assertEquals(2, storeReads.get());
+    }
+
+    @Test
+    void shouldNotCacheExpiredEntryLoadedFromStore() {
+        GridCell cell = GridCell.of(52.23, 21.01, GRID_SIZE);
+        GridCell first = GridCell.of(50.0, 20.0, GRID_SIZE);
+        GridCell second = GridCell.of(51.0, 20.0, GRID_SIZE);
+        Instant now = clock.instant();
+        CachedForecast saved = new CachedForecast(cell, new WeatherApiResponse(new DailyData()), now.minus(Duration.ofHours(1)), now.minus(Duration.ofMinutes(30)));
+        AtomicInteger storeReads = new AtomicInteger();
+        ForecastStore store = new ForecastStore() {
+            @Override
+            public Optional<CachedForecast> load(GridCell key) {
+                storeReads.incrementAndGet();
+                return key.equals(cell) ? Optional.of(saved) : Optional.empty();
+            }
+
+            @Override
+            public void save(CachedForecast forecast) {
+            }
+        };
+        forecastCache = new ForecastCache(Duration.ofMinutes(30), 2, Duration.ofSeconds(5), store, clock);
+        forecastCache.get(first, this::load);
+        forecastCache.get(second, this::load);
+
+        assertSame(saved, forecastCache.getIfStale(cell, Duration.ofHours(1)));
+        assertSame(saved, forecastCache.getIfStale(cell, Duration.ofHours(6)));
+        assertEquals(4, storeReads.get());
+        assertEquals(0, forecastCache.stats().evictions());
+        assertEquals(2, forecastCache.stats().size());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntryWhenFull() {
+        GridCell first = GridCell.of(50.0, 20.0, GRID_SIZE);
+        GridCell second = GridCell.of(51.0, 20.0, GRID_SIZE);
+        GridCell third = GridCell.of(52.0, 20.0, GRID_SIZE);
+
+        forecastCache.get(first, this::load);
+        forecastCache.get(second, this::load);
+        forecastCache.get(first, this::load);
+        forecastCache.get(third, this::load);
+        forecastCache.get(first, this::load);
+        forecastCache.get(second, this::load);
+
+        assertEquals(4, loads.get());
+        assertEquals(2, forecastCache.stats().evictions());
+    }
+
+    @Test
+    void shouldCoalesceConcurrentMissesIntoOneLoad() throws Exception {
+        GridCell cell = GridCell.of(52.23, 21.01, GRID_SIZE);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> forecastCache.get(cell, () -> {
+                    awaitQuietly(release);
+                    return load();
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<?> result : results) {
+                assertNotNull(result.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldPropagateLoadFailureToEveryWaiter() throws Exception {
+        GridCell cell = GridCell.of(52.23, 21.01, GRID_SIZE);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> forecastCache.get(cell, () -> {
+                    awaitQuietly(release);
+                    loads.incrementAndGet();
+                    throw new WeatherApiException("Error fetching weather data");
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<?> result : results) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(WeatherApiException.class, e.getCause());
+            }
+        }
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldWaitForCellsInFlightInsteadOfFetchingThemAgainInBatch() throws Exception {
+        GridCell inFlight = GridCell.of(52.23, 21.01, GRID_SIZE);
+        GridCell other = GridCell.of(50.06, 19.94, GRID_SIZE);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<GridCell>> batches = new ArrayList<>();
+        Map<GridCell, RuntimeException> failures = new ConcurrentHashMap<>();
+
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            Future<CachedForecast> single = executor.submit(() -> forecastCache.get(inFlight, () -> {
+                awaitQuietly(release);
+                return load();
+            }));
+            Thread.sleep(100);
+            Map<GridCell, CachedForecast> loaded = forecastCache.getAll(List.of(inFlight, other), cells -> {
+                batches.add(cells);
+                release.countDown();
+                return Map.of(other, load());
+            }, failures, true);
+
+            assertEquals(List.of(List.of(other)), batches);
+            assertEquals(single.get(5, TimeUnit.SECONDS), loaded.get(inFlight));
+            assertNotNull(loaded.get(other));
+            assertTrue(failures.isEmpty());
+        }
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldReportBatchCellsTheLoaderLeftOutAsFailures() {
+        GridCell loaded = GridCell.of(52.23, 21.01, GRID_SIZE);
+        GridCell invalid = GridCell.of(50.06, 19.94, GRID_SIZE);
+        GridCell forgotten = GridCell.of(51.11, 17.03, GRID_SIZE);
+        Map<GridCell, RuntimeException> failures = new ConcurrentHashMap<>();
+
+        Map<GridCell, CachedForecast> result = forecastCache.getAll(List.of(loaded, invalid, forgotten), cells -> {
+            failures.put(invalid, new WeatherDataException("Weather response is missing daily data"));
+            return Map.of(loaded, load());
+        }, failures, true);
+
+        assertEquals(Set.of(loaded), result.keySet());
+        assertEquals("Weather response is missing daily data", failures.get(invalid).getMessage());
+        assertInstanceOf(WeatherApiException.class, failures.get(forgotten));
+        assertThrows(WeatherApiException.class, () -> forecastCache.get(forgotten, () -> {
+            throw new WeatherApiException("still failing");
+        }));
+    }
+
+    @Test
+    void shouldOfferOnlyPopularEntriesNearExpiryForRefresh() {
+        GridCell hot = GridCell.of(50.0, 20.0, GRID_SIZE);
+        GridCell cold = GridCell.of(51.0, 20.0, GRID_SIZE);
+        for (int i = 0; i < 4; i++) {
+            forecastCache.get(hot, this::load);
+        }
+        forecastCache.get(cold, this::load);
+
+        assertTrue(forecastCache.hotEntriesExpiringBefore(clock.instant().plus(Duration.ofMinutes(5)), 2).isEmpty());
+
+        clock.advance(Duration.ofMinutes(26));
+        List<HotEntry> candidates = forecastCache.hotEntriesExpiringBefore(clock.instant().plus(Duration.ofMinutes(5)), 2);
+
+        assertEquals(List.of(new HotEntry(hot, Instant.parse("2024-01-15T12:30:00Z"), 4)), candidates);
+    }
+
+    @Test
+    void shouldReturnWatchedCellsWithoutEntryAsExpiringNow() {
+        GridCell watched = GridCell.of(52.24, 21.01, GRID_SIZE);
+        forecastCache.watch(watched);
+
+        List<HotEntry> candidates = forecastCache.hotEntriesExpiringBefore(clock.instant().plus(Duration.ofMinutes(5)), 100);
+
+        assertEquals(List.of(new HotEntry(watched, clock.instant(), 1)), candidates);
+    }
+
+    @Test
+    void shouldLetEntriesLapseOnceAccessCountsDecay() {
+        GridCell cell = GridCell.of(50.0, 20.0, GRID_SIZE);
+        for (int i = 0; i < 4; i++) {
+            forecastCache.get(cell, this::load);
+        }
+        Instant deadline = clock.instant().plus(Duration.ofHours(1));
+
+        forecastCache.decayAccessCounts();
+        assertEquals(2, forecastCache.hotEntriesExpiringBefore(deadline, 2).getFirst().accesses());
+        forecastCache.decayAccessCounts();
+        assertTrue(forecastCache.hotEntriesExpiringBefore(deadline, 2).isEmpty());
+    }
+
+    @Test
+    void shouldReplaceEntryOnRefreshWithoutCountingAccess() {
+        GridCell cell = GridCell.of(52.23, 21.01, GRID_SIZE);
+        forecastCache.get(cell, this::load);
+        clock.advance(Duration.ofMinutes(20));
+
+        CachedForecast refreshed = forecastCache.refresh(cell, this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(clock.instant().plus(Duration.ofMinutes(30)), refreshed.expiresAt());
+        assertEquals(new CacheStats(0, 1, 0, 1), forecastCache.stats());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void shouldServeNearestFreshCellWithinRadius() {
+        GridCell warsaw = GridCell.of(52.23, 21.01, GRID_SIZE);
+        GridCell farther = GridCell.of(52.26, 21.01, GRID_SIZE);
+        forecastCache.get(warsaw, this::load);
+        forecastCache.get(farther, this::load);
+
+        GridCell requested = GridCell.of(52.24, 21.01, GRID_SIZE);
+        CachedForecast nearby = forecastCache.getNearby(52.24, 21.01, requested, 3);
+
+        assertEquals(warsaw, nearby.cell());
+        assertEquals(1.11, warsaw.distanceKm(52.24, 21.01), 0.01);
+        assertNull(forecastCache.getNearby(52.24, 21.01, requested, 1));
+        assertNull(forecastCache.getNearby(52.30, 21.01, GridCell.of(52.30, 21.01, GRID_SIZE), 3));
+    }
+
+    @Test
+    void shouldNotServeExpiredOrEvictedCellsAsNearby() {
+        GridCell first = GridCell.of(52.23, 21.01, GRID_SIZE);
+        forecastCache.get(first, this::load);
+        clock.advance(Duration.ofMinutes(30));
+
+        assertNull(forecastCache.getNearby(52.24, 21.01, GridCell.of(52.24, 21.01, GRID_SIZE), 3));
+
+        forecastCache.get(first, this::load);
+        forecastCache.get(GridCell.of(10.0, 10.0, GRID_SIZE), this::load);
+        forecastCache.get(GridCell.of(20.0, 20.0, GRID_SIZE), this::load);
+
+        assertNull(forecastCache.getNearby(52.24, 21.01, GridCell.of(52.24, 21.01, GRID_SIZE), 3));
+    }
+
+    @Test
+    void shouldFindNearbyCellsAcrossTheAntimeridian() {
+        GridCell east = GridCell.of(-17.0, 179.99, GRID_SIZE);
+        forecastCache.get(east, this::load);
+
+        CachedForecast nearby = forecastCache.getNearby(-17.0, -179.99, GridCell.of(-17.0, -179.99, GRID_SIZE), 5);
+
+        assertEquals(east, nearby.cell());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.GridCell;
+import com.example.theweatherapp.cache.HotEntry;
+import com.example.theweatherapp.exception.WeatherApiException;
+import com.example.theweatherapp.service.ForecastRefreshScheduler;
+import com.example.theweatherapp.service.WeatherForecastService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ForecastRefreshSchedulerTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-15T12:00:00Z");
+
+    private ForecastCache forecastCache;
+    private WeatherForecastService weatherForecastService;
+    private TaskScheduler taskScheduler;
+    private SimpleMeterRegistry meterRegistry;
+    private ForecastRefreshScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        forecastCache = mock(ForecastCache.class);
+        weatherForecastService = mock(WeatherForecastService.class);
+        taskScheduler = mock(TaskScheduler.class);
+        meterRegistry = new SimpleMeterRegistry();
+        scheduler = new ForecastRefreshScheduler(forecastCache, weatherForecastService, taskScheduler,
+                Clock.fixed(NOW, ZoneOffset.UTC), meterRegistry,
+                Duration.ofMinutes(1), Duration.ofMinutes(5), 3, 2);
+    }
+
+    private static HotEntry hot(double lat, long accesses) {
+        return new HotEntry(GridCell.of(lat, 20.0, 0.01), NOW.plus(Duration.ofMinutes(4)), accesses);
+    }
+
+    @Test
+    void shouldScheduleMostPopularCellsWithinBudgetAndBeforeExpiry() {
+        when(forecastCache.hotEntriesExpiringBefore(NOW.plus(Duration.ofMinutes(5)), 3))
+                .thenReturn(List.of(hot(50.0, 9), hot(51.0, 7), hot(52.0, 5)));
+
+        scheduler.scheduleRefreshes();
+
+        ArgumentCaptor<Runnable> tasks = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Instant> times = ArgumentCaptor.forClass(Instant.class);
+        verify(taskScheduler, times(2)).schedule(tasks.capture(), times.capture());
+        verify(forecastCache).decayAccessCounts();
+        for (Instant time : times.getAllValues()) {
+            assertFalse(time.isBefore(NOW));
+            assertTrue(time.isBefore(NOW.plus(Duration.ofMinutes(1))));
+        }
+
+        tasks.getAllValues().forEach(Runnable::run);
+        verify(weatherForecastService).refresh(GridCell.of(50.0, 20.0, 0.01));
+        verify(weatherForecastService).refresh(GridCell.of(51.0, 20.0, 0.01));
+        verify(weatherForecastService, never()).refresh(GridCell.of(52.0, 20.0, 0.01));
+        assertEquals(2, meterRegistry.get("weather.cache.refreshes").tag("outcome", "success").counter().count());
+    }
+
+    @Test
+    void shouldNotScheduleCellWhoseRefreshIsStillPending() {
+        when(forecastCache.hotEntriesExpiringBefore(any(), anyLong())).thenReturn(List.of(hot(50.0, 9)));
+
+        scheduler.scheduleRefreshes();
+        scheduler.scheduleRefreshes();
+
+        verify(taskScheduler, times(1)).schedule(any(Runnable.class), any(Instant.class));
+    }
+
+    @Test
+    void shouldCountFailedRefreshAndAllowRetryNextCycle() {
+        when(forecastCache.hotEntriesExpiringBefore(any(), anyLong())).thenReturn(List.of(hot(50.0, 9)));
+        doThrow(new WeatherApiException("Error fetching weather data")).when(weatherForecastService).refresh(any());
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+
+        scheduler.scheduleRefreshes();
+        verify(taskScheduler).schedule(task.capture(), any(Instant.class));
+        task.getValue().run();
+        scheduler.scheduleRefreshes();
+
+        assertEquals(1, meterRegistry.get("weather.cache.refreshes").tag("outcome", "error").counter().count());
+        verify(taskScheduler, times(2)).schedule(any(Runnable.class), any(Instant.class));
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.ForecastStore;
+import com.example.theweatherapp.cache.GridCell;
+import com.example.theweatherapp.cache.HotEntry;
+import com.example.theweatherapp.client.Bulkhead;
+import com.example.theweatherapp.client.CircuitBreaker;
+import com.example.theweatherapp.client.OpenMeteoClient;
+import com.example.theweatherapp.client.RateLimitBudget;
+import com.example.theweatherapp.dto.BatchForecastResultDto;
+import com.example.theweatherapp.dto.DailyForecastDto;
+import com.example.theweatherapp.dto.LocationDto;
+import com.example.theweatherapp.model.DailyData;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import com.example.theweatherapp.service.ForecastStreamService;
+import com.example.theweatherapp.service.WeatherForecastService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ForecastStreamServiceTest {
+
+    private static final LocationDto WARSAW = new LocationDto(52.23, 21.01);
+    private static final GridCell WARSAW_CELL = GridCell.of(52.23, 21.01, 0.01);
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-15T12:00:00Z"));
+
+    private ForecastCache forecastCache;
+    private WeatherForecastService weatherForecastService;
+    private ForecastStreamService forecastStreamService;
+
+    @BeforeEach
+    void setUp() {
+        forecastCache = new ForecastCache(Duration.ofMinutes(30), 100, Duration.ofSeconds(10), ForecastStore.NONE, clock);
+        OpenMeteoClient openMeteoClient = new OpenMeteoClient(restTemplate, objectMapper, new SimpleMeterRegistry(),
+                new CircuitBreaker(5, Duration.ofSeconds(30), clock), new Bulkhead(10, Duration.ofSeconds(1)),
+                RateLimitBudget.unlimited());
+        ReflectionTestUtils.setField(openMeteoClient, "apiUrl", "https://api.open-meteo.com/v1/forecast");
+        weatherForecastService = new WeatherForecastService(openMeteoClient, forecastCache, Runnable::run);
+        ReflectionTestUtils.setField(weatherForecastService, "gridSize", 0.01);
+        ReflectionTestUtils.setField(weatherForecastService, "staleWhileRevalidate", Duration.ZERO);
+        ReflectionTestUtils.setField(weatherForecastService, "staleIfError", Duration.ZERO);
+        forecastStreamService = new ForecastStreamService(weatherForecastService, forecastCache, Runnable::run,
+                0.01, Duration.ofHours(1));
+    }
+
+    /**
+     * Records sent events instead of writing them to a response.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final List<BatchForecastResultDto<?>> results = new CopyOnWriteArrayList<>();
+        private final List<Runnable> completionCallbacks = new ArrayList<>();
+        private final Semaphore received = new Semaphore(0);
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            StringBuilder text = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                if (part.getData() instanceof BatchForecastResultDto<?> result) {
+                    results.add(result);
+                } else {
+                    text.append(part.getData());
+                }
+            }
+            events.add(text.toString());
+            received.release();
+        }
+
+        @Override
+        public synchronized void onCompletion(Runnable callback) {
+            completionCallbacks.add(callback);
+        }
+
+        List<BatchForecastResultDto<?>> results() {
+            return results;
+        }
+
+        void completeByClient() {
+            completionCallbacks.forEach(Runnable::run);
+        }
+    }
+
+    private WeatherApiResponse response(double firstTempMax) {
+        DailyData dailyData = new DailyData();
+        dailyData.setDates(new String[]{"2024-01-15", "2024-01-16", "2024-01-17", "2024-01-18", "2024-01-19", "2024-01-20", "2024-01-21"});
+        dailyData.setWeatherCodes(new int[]{0, 1, 2, 61, 63, 80, 95});
+        dailyData.setTempMin(new double[]{10.0, 11.0, 9.5, 8.0, 7.0, 12.0, 13.0});
+        dailyData.setTempMax(new double[]{firstTempMax, 19.0, 18.0, 21.0, 23.0, 22.0, 24.0});
+        dailyData.setSunshineDuration(new double[]{3600.0, 1800.0, 0.0, 5400.0, 3600.0, 7200.0, 3600.0});
+        dailyData.setPressure(new double[]{1012.0, 1010.0, 1008.0, 1005.0, 1007.0, 1009.0, 1011.0});
+        return new WeatherApiResponse(dailyData);
+    }
+
+    private byte[] json(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static double firstTempMax(BatchForecastResultDto<?> result) {
+        return ((List<DailyForecastDto>) result.forecast()).getFirst().tempMax();
+    }
+
+    @Test
+    void shouldSendCurrentForecastOnSubscribe() {
+        when(restTemplate.getForObject(anyString(), eq(byte[].class))).thenReturn(json(response(20.0)));
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        forecastStreamService.subscribe(List.of(WARSAW), emitter);
+
+        assertEquals(1, emitter.results.size());
+        assertEquals(52.23, emitter.results.getFirst().latitude());
+        assertEquals(20.0, firstTempMax(emitter.results.getFirst()));
+        assertTrue(emitter.events.getFirst().contains("event:daily"));
+        assertTrue(emitter.events.getFirst().contains("id:" + forecastCache.getIfPresent(WARSAW_CELL).version()));
+    }
+
+    @Test
+    void shouldPushOnlyForecastsThatChanged() {
+        when(restTemplate.getForObject(anyString(), eq(byte[].class))).thenReturn(json(response(20.0)));
+        RecordingEmitter first = new RecordingEmitter();
+        RecordingEmitter second = new RecordingEmitter();
+        forecastStreamService.subscribe(List.of(WARSAW), first);
+        forecastStreamService.subscribe(List.of(new LocationDto(52.231, 21.011)), second);
+
+        clock.advance(Duration.ofMinutes(30));
+        forecastCache.put(WARSAW_CELL, response(20.0));
+        assertEquals(1, first.results.size());
+        assertEquals(1, second.results.size());
+
+        clock.advance(Duration.ofMinutes(30));
+        forecastCache.put(WARSAW_CELL, response(25.0));
+        assertEquals(2, first.results.size());
+        assertEquals(25.0, firstTempMax(first.results.getLast()));
+        assertEquals(2, second.results.size());
+        assertEquals(52.231, second.results.getLast().latitude());
+    }
+
+    @Test
+    void shouldStopPushingAndWatchingAfterClientLeaves() {
+        when(restTemplate.getForObject(anyString(), eq(byte[].class))).thenReturn(json(response(20.0)));
+        RecordingEmitter emitter = new RecordingEmitter();
+        forecastStreamService.subscribe(List.of(WARSAW), emitter);
+        Instant farFuture = clock.instant().plus(Duration.ofDays(1));
+
+        assertEquals(1, forecastCache.hotEntriesExpiringBefore(farFuture, 100).size());
+
+        emitter.completeByClient();
+        clock.advance(Duration.ofMinutes(30));
+        forecastCache.put(WARSAW_CELL, response(25.0));
+
+        assertEquals(1, emitter.results.size());
+        assertTrue(forecastCache.hotEntriesExpiringBefore(farFuture, 100).isEmpty());
+    }
+
+    @Test
+    void shouldFollowOwnCellWhenNearbyCellIsCached() {
+        ReflectionTestUtils.setField(weatherForecastService, "nearbyRadiusKm", 3.0);
+        when(restTemplate.getForObject(anyString(), eq(byte[].class))).thenReturn(json(response(20.0)));
+        forecastCache.put(WARSAW_CELL, response(18.0));
+        GridCell subscribedCell = GridCell.of(52.24, 21.01, 0.01);
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        forecastStreamService.subscribe(List.of(new LocationDto(52.24, 21.01)), emitter);
+
+        assertEquals(1, emitter.results.size());
+        assertEquals(20.0, firstTempMax(emitter.results.getFirst()));
+        assertNotNull(forecastCache.getIfPresent(subscribedCell));
+        List<HotEntry> hot = forecastCache.hotEntriesExpiringBefore(clock.instant().plus(Duration.ofDays(1)), 100);
+        assertEquals(List.of(subscribedCell), hot.stream().map(HotEntry::cell).toList());
+
+        clock.advance(Duration.ofMinutes(30));
+        forecastCache.put(subscribedCell, response(25.0));
+        assertEquals(2, emitter.results.size());
+        assertEquals(25.0, firstTempMax(emitter.results.getLast()));
+    }
+
+    @Test
+    void shouldSendErrorEventWhenCurrentForecastIsUnavailable() {
+        when(restTemplate.getForObject(anyString(), eq(byte[].class))).thenThrow(new ResourceAccessException("timeout"));
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        forecastStreamService.subscribe(List.of(WARSAW), emitter);
+
+        assertEquals(1, emitter.results.size());
+        assertNull(emitter.results.getFirst().forecast());
+        assertNotNull(emitter.results.getFirst().error());
+        assertTrue(emitter.events.getFirst().contains("event:error"));
+    }
+
+    @Test
+    void shouldKeepPushingToOtherSubscribersWhileOneIsStalled() throws Exception {
+        when(restTemplate.getForObject(anyString(), eq(byte[].class))).thenReturn(json(response(20.0)));
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter stalled = new RecordingEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) {
+                if (!results().isEmpty()) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.send(builder);
+            }
+        };
+        RecordingEmitter healthy = new RecordingEmitter();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            forecastStreamService = new ForecastStreamService(weatherForecastService, forecastCache, executor,
+                    0.01, Duration.ofHours(1));
+            forecastStreamService.subscribe(List.of(WARSAW), stalled);
+            assertTrue(stalled.received.tryAcquire(5, TimeUnit.SECONDS));
+            forecastStreamService.subscribe(List.of(WARSAW), healthy);
+            assertTrue(healthy.received.tryAcquire(5, TimeUnit.SECONDS));
+
+            clock.advance(Duration.ofMinutes(30));
+            forecastCache.put(WARSAW_CELL, response(25.0));
+            assertTrue(healthy.received.tryAcquire(5, TimeUnit.SECONDS));
+            clock.advance(Duration.ofMinutes(30));
+            forecastCache.put(WARSAW_CELL, response(30.0));
+            assertTrue(healthy.received.tryAcquire(5, TimeUnit.SECONDS));
+
+            assertEquals(30.0, firstTempMax(healthy.results.getLast()));
+            assertEquals(1, stalled.results.size());
+            release.countDown();
+            assertTrue(stalled.received.tryAcquire(2, 5, TimeUnit.SECONDS));
+            assertEquals(30.0, firstTempMax(stalled.results.getLast()));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+}
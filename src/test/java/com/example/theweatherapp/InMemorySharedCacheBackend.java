@@ -0,0 +1,94 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.cache.SharedCacheBackend;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Stand-in for Redis shared by several simulated instances. Messages are delivered synchronously
+ * to every subscriber, the publisher included.
+ */
+final class InMemorySharedCacheBackend implements SharedCacheBackend {
+
+    private record Entry(byte[] value, Instant expiresAt) {
+    }
+
+    private record Subscription(String channel, Consumer<String> listener) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final Clock clock;
+    private volatile boolean available = true;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    InMemorySharedCacheBackend(Clock clock) {
+        this.clock = clock;
+    }
+
+    void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    int calls() {
+        return calls.get();
+    }
+
+    @Override
+    public byte[] get(String key) {
+        checkAvailable();
+        Entry entry = entries.get(key);
+        return entry != null && entry.expiresAt().isAfter(clock.instant()) ? entry.value() : null;
+    }
+
+    @Override
+    public void set(String key, byte[] value, Duration ttl) {
+        checkAvailable();
+        entries.put(key, new Entry(value, clock.instant().plus(ttl)));
+    }
+
+    @Override
+    public boolean setIfAbsent(String key, String value, Duration ttl) {
+        checkAvailable();
+        Entry entry = new Entry(value.getBytes(), clock.instant().plus(ttl));
+        Entry current = entries.compute(key, (k, existing) ->
+                existing != null && existing.expiresAt().isAfter(clock.instant()) ? existing : entry);
+        return current == entry;
+    }
+
+    @Override
+    public void deleteIfEquals(String key, String value) {
+        checkAvailable();
+        entries.computeIfPresent(key, (k, existing) -> new String(existing.value()).equals(value) ? null : existing);
+    }
+
+    @Override
+    public void publish(String channel, String message) {
+        checkAvailable();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.channel().equals(channel)) {
+                subscription.listener().accept(message);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+        subscriptions.add(new Subscription(channel, listener));
+    }
+
+    private void checkAvailable() {
+        calls.incrementAndGet();
+        if (!available) {
+            throw new IllegalStateException("Shared cache unavailable");
+        }
+    }
+}
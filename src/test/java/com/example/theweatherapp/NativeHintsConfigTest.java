@@ -0,0 +1,44 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.config.NativeHintsConfig;
+import com.example.theweatherapp.dto.BatchForecastResultDto;
+import com.example.theweatherapp.dto.DailyForecastDto;
+import com.example.theweatherapp.model.DailyData;
+import com.example.theweatherapp.model.DailyDataDeserializer;
+import com.example.theweatherapp.model.HourlyData;
+import com.example.theweatherapp.model.HourlyDataDeserializer;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NativeHintsConfigTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    NativeHintsConfigTest() {
+        new NativeHintsConfig.JsonBindingHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void shouldRegisterUpstreamPayloadWithItsDeserializers() {
+        assertTrue(RuntimeHintsPredicates.reflection().onType(WeatherApiResponse.class)
+                .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(DailyData.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(HourlyData.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(DailyDataDeserializer.class)
+                .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(HourlyDataDeserializer.class)
+                .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+    }
+
+    @Test
+    void shouldRegisterRecordsWrittenOutsideControllerReturnTypes() throws NoSuchMethodException {
+        assertTrue(RuntimeHintsPredicates.reflection().onType(BatchForecastResultDto.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(DailyForecastDto.class.getMethod("tempMax")).test(hints));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.client.RateLimitBudget;
+import com.example.theweatherapp.client.RateLimitBudget.Priority;
+import com.example.theweatherapp.client.RateLimitBudget.Quota;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitBudgetTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-15T12:00:00Z"));
+
+    private RateLimitBudget budget(double burst, double backgroundReserve, Duration maxWait, Quota... quotas) {
+        return new RateLimitBudget(List.of(quotas), burst, backgroundReserve, maxWait, clock);
+    }
+
+    private static int acquire(RateLimitBudget budget, int times, Priority priority) {
+        int acquired = 0;
+        for (int i = 0; i < times; i++) {
+            if (budget.tryAcquire(1, priority)) {
+                acquired++;
+            }
+        }
+        return acquired;
+    }
+
+    @Test
+    void shouldAllowBurstAndThenRefillOverTheWindow() {
+        RateLimitBudget budget = budget(0.2, 0, Duration.ZERO, new Quota(100, Duration.ofMinutes(1)));
+
+        assertEquals(20, acquire(budget, 25, Priority.USER));
+
+        clock.advance(Duration.ofSeconds(15));
+
+        assertEquals(20, acquire(budget, 25, Priority.USER));
+    }
+
+    @Test
+    void shouldStayWithinEveryQuota() {
+        RateLimitBudget budget = budget(0.5, 0, Duration.ZERO,
+                new Quota(100, Duration.ofMinutes(1)), new Quota(200, Duration.ofHours(1)));
+
+        assertEquals(50, acquire(budget, 60, Priority.USER));
+        clock.advance(Duration.ofMinutes(1));
+        assertEquals(50, acquire(budget, 60, Priority.USER));
+        clock.advance(Duration.ofMinutes(1));
+
+        assertEquals(3, acquire(budget, 60, Priority.USER));
+        assertEquals(0.33, budget.remaining(new Quota(200, Duration.ofHours(1))), 0.01);
+    }
+
+    @Test
+    void shouldKeepReserveForUsers() {
+        RateLimitBudget budget = budget(0.2, 0.5, Duration.ZERO, new Quota(100, Duration.ofMinutes(1)));
+
+        assertEquals(10, acquire(budget, 20, Priority.BACKGROUND));
+
+        assertEquals(10, acquire(budget, 20, Priority.USER));
+    }
+
+    @Test
+    void shouldQueueUserCallsForAtMostMaxWait() {
+        RateLimitBudget budget = budget(0.1, 0, Duration.ofMillis(200), new Quota(600, Duration.ofMinutes(1)));
+        assertEquals(60, acquire(budget, 60, Priority.USER));
+
+        assertTrue(budget.tryAcquire(1, Priority.USER));
+        assertFalse(budget.tryAcquire(1, Priority.USER));
+        assertFalse(budget.tryAcquire(1, Priority.BACKGROUND));
+    }
+
+    @Test
+    void shouldBackOffAfterUpstreamThrottles() {
+        RateLimitBudget budget = budget(0.2, 0, Duration.ZERO,
+                new Quota(100, Duration.ofMinutes(1)), new Quota(1000, Duration.ofDays(1)));
+
+        budget.onThrottled();
+
+        assertFalse(budget.tryAcquire(1, Priority.USER));
+        clock.advance(Duration.ofSeconds(1));
+        assertTrue(budget.tryAcquire(1, Priority.USER));
+    }
+
+    @Test
+    void shouldRefillQuotaOfOneCallPerWindow() {
+        RateLimitBudget budget = budget(0.2, 0, Duration.ZERO, new Quota(1, Duration.ofMinutes(1)));
+
+        assertEquals(1, acquire(budget, 3, Priority.USER));
+        clock.advance(Duration.ofSeconds(30));
+        assertEquals(0, acquire(budget, 3, Priority.USER));
+        clock.advance(Duration.ofSeconds(30));
+        assertEquals(1, acquire(budget, 3, Priority.USER));
+        clock.advance(Duration.ofMinutes(5));
+        assertEquals(1, acquire(budget, 3, Priority.USER));
+    }
+
+    @Test
+    void shouldRejectSecondCallWithinWindowOfOneCallQuota() {
+        RateLimitBudget budget = budget(0.5, 0, Duration.ZERO, new Quota(1, Duration.ofMinutes(1)));
+
+        assertTrue(budget.tryAcquire(1, Priority.USER));
+        clock.advance(Duration.ofSeconds(59));
+        assertFalse(budget.tryAcquire(1, Priority.USER));
+        clock.advance(Duration.ofSeconds(1));
+        assertTrue(budget.tryAcquire(1, Priority.USER));
+        assertFalse(budget.tryAcquire(1, Priority.USER));
+    }
+
+    @Test
+    void shouldRejectEmptyQuotas() {
+        assertThrows(IllegalArgumentException.class, () -> new Quota(0, Duration.ofMinutes(1)));
+        assertThrows(IllegalArgumentException.class, () -> new Quota(10, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> Quota.parse("0/PT1M"));
+    }
+
+    @Test
+    void shouldParseQuotas() {
+        assertEquals(new Quota(600, Duration.ofMinutes(1)), Quota.parse("600/PT1M"));
+        assertEquals(new Quota(10000, Duration.ofDays(1)), Quota.parse(" 10000 / P1D "));
+        assertThrows(IllegalArgumentException.class, () -> Quota.parse("600 per minute"));
+    }
+}
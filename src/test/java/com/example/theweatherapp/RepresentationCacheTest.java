@@ -0,0 +1,37 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.cache.RepresentationCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepresentationCacheTest {
+
+    private final RepresentationCache representationCache = new RepresentationCache("test", DataSize.ofBytes(100));
+
+    @Test
+    void shouldEvictLeastRecentlyUsedBodiesOnceOverMaxSize() {
+        representationCache.get("a", () -> new byte[40]);
+        representationCache.get("b", () -> new byte[40]);
+        representationCache.get("a", () -> new byte[40]);
+
+        representationCache.get("c", () -> new byte[40]);
+
+        assertEquals(80, representationCache.size());
+        assertNotNull(representationCache.getIfPresent("a"));
+        assertNull(representationCache.getIfPresent("b"));
+        assertNotNull(representationCache.getIfPresent("c"));
+    }
+
+    @Test
+    void shouldNotKeepBodiesLargerThanMaxSize() {
+        representationCache.get("small", () -> new byte[40]);
+
+        byte[] large = representationCache.get("large", () -> new byte[101]);
+
+        assertEquals(101, large.length);
+        assertNull(representationCache.getIfPresent("large"));
+        assertEquals(40, representationCache.size());
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.cache.CachedForecast;
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.GridCell;
+import com.example.theweatherapp.cache.SharedForecastStore;
+import com.example.theweatherapp.client.CircuitBreaker;
+import com.example.theweatherapp.model.DailyData;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedForecastStoreTest {
+
+    private static final GridCell WARSAW = GridCell.of(52.23, 21.01, 0.01);
+    private static final GridCell KRAKOW = GridCell.of(50.06, 19.94, 0.01);
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-15T12:00:00Z"));
+    private final InMemorySharedCacheBackend backend = new InMemorySharedCacheBackend(clock);
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    /**
+     * One simulated replica: its own near-cache and store client on the shared backend.
+     */
+    private ForecastCache instance() {
+        SharedForecastStore store = new SharedForecastStore(backend, objectMapper, clock, "weather:forecast:",
+                Duration.ofSeconds(10), Duration.ofSeconds(5), Duration.ofHours(6),
+                new CircuitBreaker(3, Duration.ofSeconds(10), clock));
+        return new ForecastCache(Duration.ofMinutes(30), 100, Duration.ofSeconds(10), store, clock);
+    }
+
+    private WeatherApiResponse fetch(double tempMax) {
+        upstreamCalls.incrementAndGet();
+        DailyData dailyData = new DailyData();
+        dailyData.setDates(new String[]{"2024-01-15", "2024-01-16"});
+        dailyData.setWeatherCodes(new int[]{3, 61});
+        dailyData.setTempMin(new double[]{-3.1, -4.6});
+        dailyData.setTempMax(new double[]{tempMax, 0.2});
+        dailyData.setPressure(new double[]{1003.4, 998.7});
+        dailyData.setSunshineDuration(new double[]{1800.0, 1523.47});
+        return new WeatherApiResponse(dailyData);
+    }
+
+    private static double firstTempMax(CachedForecast cached) {
+        return cached.response().dailyData().getTempMax()[0];
+    }
+
+    @Test
+    void shouldFetchOnceForAllInstances() {
+        ForecastCache first = instance();
+        ForecastCache second = instance();
+
+        CachedForecast fetched = first.get(WARSAW, () -> fetch(1.4));
+        CachedForecast shared = second.get(WARSAW, () -> fetch(1.4));
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(fetched.version(), shared.version());
+        assertEquals(1.4, firstTempMax(shared));
+        assertEquals(fetched.expiresAt(), shared.expiresAt());
+    }
+
+    @Test
+    void shouldWaitForInstanceHoldingTheLock() throws Exception {
+        ForecastCache first = instance();
+        ForecastCache second = instance();
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<CachedForecast> leader = CompletableFuture.supplyAsync(() -> first.get(WARSAW, () -> {
+            fetching.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return fetch(1.4);
+        }));
+        assertTrue(fetching.await(5, TimeUnit.SECONDS));
+        CompletableFuture<CachedForecast> follower = CompletableFuture.supplyAsync(() -> second.get(WARSAW, () -> fetch(9.9)));
+        Thread.sleep(200);
+        assertFalse(follower.isDone());
+        release.countDown();
+
+        assertEquals(leader.get(5, TimeUnit.SECONDS).version(), follower.get(5, TimeUnit.SECONDS).version());
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void shouldPickUpForecastRefreshedByAnotherInstance() {
+        ForecastCache first = instance();
+        ForecastCache second = instance();
+        first.get(WARSAW, () -> fetch(1.4));
+        second.get(WARSAW, () -> fetch(1.4));
+
+        clock.advance(Duration.ofMinutes(27));
+        CachedForecast refreshed = first.refresh(WARSAW, () -> fetch(2.5));
+        CachedForecast skipped = second.refresh(WARSAW, () -> fetch(2.5));
+
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(refreshed.version(), skipped.version());
+        assertEquals(2.5, firstTempMax(second.getIfPresent(WARSAW)));
+    }
+
+    @Test
+    void shouldDropNearCacheEntryWhenAnotherInstanceSavesNewerForecast() {
+        ForecastCache first = instance();
+        ForecastCache second = instance();
+        first.get(WARSAW, () -> fetch(1.4));
+        second.get(WARSAW, () -> fetch(1.4));
+
+        clock.advance(Duration.ofMinutes(10));
+        first.put(WARSAW, fetch(2.5));
+
+        assertEquals(2.5, firstTempMax(second.get(WARSAW, () -> fetch(9.9))));
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void shouldFetchOnlyUnlockedCellsOfBatchAndWaitForTheRest() throws Exception {
+        ForecastCache first = instance();
+        ForecastCache second = instance();
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<CachedForecast> leader = CompletableFuture.supplyAsync(() -> first.get(WARSAW, () -> {
+            fetching.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return fetch(1.4);
+        }));
+        assertTrue(fetching.await(5, TimeUnit.SECONDS));
+        List<List<GridCell>> batches = new CopyOnWriteArrayList<>();
+        CompletableFuture<Map<GridCell, CachedForecast>> batch = CompletableFuture.supplyAsync(() -> second.getAll(
+                List.of(WARSAW, KRAKOW),
+                cells -> {
+                    batches.add(cells);
+                    return Map.of(KRAKOW, fetch(5.0));
+                },
+                new ConcurrentHashMap<>(),
+                true));
+        Thread.sleep(200);
+        release.countDown();
+
+        Map<GridCell, CachedForecast> loaded = batch.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(List.of(KRAKOW)), batches);
+        assertEquals(leader.get(5, TimeUnit.SECONDS).version(), loaded.get(WARSAW).version());
+        assertEquals(5.0, firstTempMax(loaded.get(KRAKOW)));
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void shouldFetchLocallyWhileBackendIsDown() {
+        ForecastCache first = instance();
+        backend.setAvailable(false);
+
+        CachedForecast cached = first.get(WARSAW, () -> fetch(1.4));
+
+        assertEquals(1.4, firstTempMax(cached));
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void shouldStopCallingBackendWhileItKeepsFailing() {
+        ForecastCache first = instance();
+        backend.setAvailable(false);
+
+        first.get(WARSAW, () -> fetch(1.4));
+        int callsUntilOpen = backend.calls();
+        first.get(KRAKOW, () -> fetch(2.5));
+
+        assertEquals(3, callsUntilOpen);
+        assertEquals(callsUntilOpen, backend.calls());
+        assertEquals(2, upstreamCalls.get());
+
+        backend.setAvailable(true);
+        clock.advance(Duration.ofSeconds(10));
+        first.put(KRAKOW, fetch(2.5));
+        assertTrue(backend.calls() > callsUntilOpen);
+        assertEquals(2.5, firstTempMax(instance().get(KRAKOW, () -> fetch(9.9))));
+    }
+
+    @Test
+    @ExtendWith(OutputCaptureExtension.class)
+    void shouldWarnOncePerCircuitStateChange(CapturedOutput output) {
+        ForecastCache first = instance();
+        backend.setAvailable(false);
+
+        for (int i = 0; i < 5; i++) {
+            first.get(GridCell.of(50.0 + i, 20.0, 0.01), () -> fetch(1.4));
+        }
+        backend.setAvailable(true);
+        clock.advance(Duration.ofSeconds(10));
+        first.get(KRAKOW, () -> fetch(2.5));
+
+        assertEquals(1, output.getAll().split("Shared store circuit opened", -1).length - 1);
+        assertEquals(1, output.getAll().split("Shared store circuit closed", -1).length - 1);
+        assertFalse(output.getAll().contains("CircuitOpenException"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.dto.DailySolarYieldDto;
+import com.example.theweatherapp.dto.HourlySolarYieldDto;
+import com.example.theweatherapp.dto.SolarYieldDto;
+import com.example.theweatherapp.exception.WeatherDataException;
+import com.example.theweatherapp.model.HourlyData;
+import com.example.theweatherapp.model.WeatherApiResponse;
+import com.example.theweatherapp.service.SolarYieldAggregator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolarYieldAggregatorTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private static HourlyData hourlyData(String[] times, double[] radiation, double[] sunshine) {
+        HourlyData hourlyData = new HourlyData();
+        hourlyData.setTimes(times);
+        hourlyData.setShortwaveRadiation(radiation);
+        hourlyData.setSunshineDuration(sunshine);
+        return hourlyData;
+    }
+
+    @Test
+    void shouldRollHoursUpIntoDaysAndTotal() {
+        HourlyData hourlyData = hourlyData(
+                new String[]{"2024-01-15T11:00", "2024-01-15T12:00", "2024-01-16T11:00", "2024-01-16T12:00", "2024-01-16T13:00"},
+                new double[]{400.0, 600.0, 250.0, Double.NaN, 125.0},
+                new double[]{3600.0, 1800.0, 900.0, 0.0, Double.NaN});
+
+        SolarYieldDto yield = SolarYieldAggregator.aggregate(hourlyData, 5.0, 0.8, true);
+
+        assertEquals(List.of(
+                new DailySolarYieldDto("2024-01-15", 4.0, 1.5, 600.0, List.of(
+                        new HourlySolarYieldDto("2024-01-15T11:00", 400.0, 3600.0, 1.6),
+                        new HourlySolarYieldDto("2024-01-15T12:00", 600.0, 1800.0, 2.4))),
+                new DailySolarYieldDto("2024-01-16", 1.5, 0.3, 250.0, List.of(
+                        new HourlySolarYieldDto("2024-01-16T11:00", 250.0, 900.0, 1.0),
+                        new HourlySolarYieldDto("2024-01-16T12:00", 0.0, 0.0, 0.0),
+                        new HourlySolarYieldDto("2024-01-16T13:00", 125.0, 0.0, 0.5)))
+        ), yield.days());
+        assertEquals(5.5, yield.totalEnergy());
+        assertEquals(2.75, yield.averageDailyEnergy());
+    }
+
+    @Test
+    void shouldOmitHoursUnlessRequested() {
+        HourlyData hourlyData = hourlyData(new String[]{"2024-01-15T12:00"}, new double[]{500.0}, new double[]{3600.0});
+
+        SolarYieldDto yield = SolarYieldAggregator.aggregate(hourlyData, 2.5, 0.8, false);
+
+        assertNull(yield.days().getFirst().hours());
+        assertEquals(1.0, yield.totalEnergy());
+    }
+
+    @Test
+    void shouldAggregateRecordedWeekIntoSevenDays() throws Exception {
+        HourlyData hourlyData;
+        try (InputStream in = getClass().getResourceAsStream("/open-meteo/hourly.json")) {
+            hourlyData = objectMapper.readValue(in, WeatherApiResponse.class).hourlyData();
+        }
+
+        SolarYieldAggregator.validate(hourlyData);
+        SolarYieldDto yield = SolarYieldAggregator.aggregate(hourlyData, 2.5, 0.8, true);
+
+        assertEquals(168, hourlyData.getTimes().length);
+        assertEquals(7, yield.days().size());
+        assertEquals("2024-01-21", yield.days().getLast().date());
+        assertTrue(yield.days().stream().allMatch(day -> day.hours().size() == 24));
+        double dailySum = yield.days().stream().mapToDouble(DailySolarYieldDto::energy).sum();
+        assertEquals(yield.totalEnergy(), dailySum, 0.05);
+    }
+
+    @Test
+    void shouldRejectIncompleteHourlyData() {
+        HourlyData hourlyData = hourlyData(new String[]{"2024-01-15T12:00", "2024-01-15T13:00"}, new double[]{500.0}, new double[]{0.0, 0.0});
+
+        WeatherDataException e = assertThrows(WeatherDataException.class, () -> SolarYieldAggregator.validate(hourlyData));
+        assertEquals("Weather response is missing radiation data", e.getMessage());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.theweatherapp;
+
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.ForecastStore;
+import com.example.theweatherapp.client.Bulkhead;
+import com.example.theweatherapp.client.CircuitBreaker;
+import com.example.theweatherapp.client.OpenMeteoClient;
+import com.example.theweatherapp.client.RateLimitBudget;
+import com.example.theweatherapp.exception.WeatherDataException;
+import com.example.theweatherapp.service.SolarYieldService;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SolarYieldServiceTest {
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private SolarYieldService solarYieldService;
+
+    @BeforeEach
+    void setUp() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-15T12:00:00Z"));
+        ForecastCache hourlyForecastCache = new ForecastCache("hourly", Duration.ofMinutes(30), 100, Duration.ofSeconds(10), ForecastStore.NONE, clock);
+        OpenMeteoClient openMeteoClient = new OpenMeteoClient(restTemplate, objectMapper, new SimpleMeterRegistry(),
+                new CircuitBreaker(5, Duration.ofSeconds(30), clock), new Bulkhead(10, Duration.ofSeconds(1)),
+                RateLimitBudget.unlimited());
+        ReflectionTestUtils.setField(openMeteoClient, "apiUrl", "https://api.open-meteo.com/v1/forecast");
+        solarYieldService = new SolarYieldService(openMeteoClient, hourlyForecastCache);
+        ReflectionTestUtils.setField(solarYieldService, "gridSize", 0.01);
+        ReflectionTestUtils.setField(solarYieldService, "staleIfError", Duration.ofHours(6));
+    }
+
+    private static byte[] hourlyPayload() throws Exception {
+        try (InputStream in = SolarYieldServiceTest.class.getResourceAsStream("/open-meteo/hourly.json")) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void shouldDeriveEveryPanelAndGranularityFromOneHourlyFetch() throws Exception {
+        when(restTemplate.getForObject(contains("hourly=shortwave_radiation,sunshine_duration"), eq(byte[].class)))
+                .thenReturn(hourlyPayload());
+
+        var small = solarYieldService.getSolarYield(52.2297, 21.0122, 2.5, 0.8, false).forecast();
+        var large = solarYieldService.getSolarYield(52.2301, 21.0149, 5.0, 0.8, true).forecast();
+
+        assertEquals(7, small.days().size());
+        assertNull(small.days().getFirst().hours());
+        assertEquals(24, large.days().getFirst().hours().size());
+        assertEquals(small.totalEnergy() * 2, large.totalEnergy(), 0.02);
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(byte[].class));
+    }
+
+    @Test
+    void shouldRejectResponseWithoutHourlyData() {
+        when(restTemplate.getForObject(anyString(), eq(byte[].class))).thenReturn("{}".getBytes());
+
+        assertThrows(WeatherDataException.class, () -> solarYieldService.getSolarYield(52.2297, 21.0122, 2.5, 0.8, false));
+    }
+}
@@ -1,33 +1,117 @@
 package com.example.theweatherapp;
 
+import com.example.theweatherapp.cache.RepresentationCache;
+import com.example.theweatherapp.controller.ForecastResponseEncoder;
 import com.example.theweatherapp.controller.WeatherForecastController;
+import com.example.theweatherapp.dto.BatchForecastResultDto;
 import com.example.theweatherapp.dto.DailyForecastDto;
+import com.example.theweatherapp.dto.DailySolarYieldDto;
+import com.example.theweatherapp.dto.LocationDto;
+import com.example.theweatherapp.dto.SolarYieldDto;
 import com.example.theweatherapp.dto.WeeklyForecastSummaryDto;
+import com.example.theweatherapp.exception.WeatherApiException;
+import com.example.theweatherapp.service.ForecastResult;
+import com.example.theweatherapp.service.ForecastStreamService;
+import com.example.theweatherapp.service.SolarYieldService;
 import com.example.theweatherapp.service.WeatherForecastService;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.io.ByteArrayInputStream;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(WeatherForecastController.class)
+@Import({SimpleMeterRegistry.class, ForecastResponseEncoder.class, RepresentationCache.class,
+        WeatherForecastControllerTest.FixedClockConfig.class})
 class WeatherForecastControllerTest {
 
+    private static final Instant FETCHED_AT = Instant.parse("2024-01-15T12:00:00Z");
+
+    @TestConfiguration
+    static class FixedClockConfig {
+
+        @Bean
+        Clock clock() {
+            return Clock.fixed(FETCHED_AT.plus(Duration.ofMinutes(10)), ZoneOffset.UTC);
+        }
+
+        @Bean
+        RepresentationCache solarRepresentationCache() {
+            return new RepresentationCache("solar", DataSize.ofMegabytes(1));
+        }
+    }
+
     @Autowired
     private MockMvc mockMvc;
 
     @MockitoBean
     private WeatherForecastService weatherForecastService;
 
+    @MockitoBean
+    private SolarYieldService solarYieldService;
+
+    @MockitoBean
+    private ForecastStreamService forecastStreamService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RepresentationCache representationCache;
+
+    @Autowired
+    @Qualifier("solarRepresentationCache")
+    private RepresentationCache solarRepresentationCache;
+
+    private static final AtomicInteger VERSIONS = new AtomicInteger();
+
+    /**
+     * Each call gets its own version, so encoded bodies cached by earlier tests are never reused.
+     */
+    private static <T> ForecastResult<T> forecast(T forecast, boolean stale) {
+        return forecast(forecast, stale, "5223.2101-" + VERSIONS.incrementAndGet());
+    }
+
+    private static <T> ForecastResult<T> forecast(T forecast, boolean stale, String version) {
+        return new ForecastResult<>(() -> forecast, version, FETCHED_AT, FETCHED_AT.plus(Duration.ofMinutes(30)), stale);
+    }
+
     @Test
     void shouldReturnDailyForecastWithValidCoordinates() throws Exception {
         // Given
@@ -40,7 +124,7 @@ class WeatherForecastControllerTest {
         );
 
         when(weatherForecastService.getDailyForecast(latitude, longitude))
-                .thenReturn(expectedForecast);
+                .thenReturn(forecast(expectedForecast, false));
 
         // When & Then
         mockMvc.perform(get("/api/forecast/daily")
@@ -119,7 +203,7 @@ class WeatherForecastControllerTest {
         );
 
         when(weatherForecastService.getWeeklySummary(latitude, longitude))
-                .thenReturn(expectedSummary);
+                .thenReturn(forecast(expectedSummary, false));
 
         // When & Then
         mockMvc.perform(get("/api/forecast/summary")
@@ -134,4 +218,348 @@ class WeatherForecastControllerTest {
                 .andExpect(jsonPath("$.weeklyTempMax").value(18.3))
                 .andExpect(jsonPath("$.summary").value("Z opadami"));
     }
+
+    @Test
+    void shouldReturnBatchDailyForecasts() throws Exception {
+        List<LocationDto> locations = List.of(new LocationDto(52.2297, 21.0122), new LocationDto(50.0647, 19.945));
+        when(weatherForecastService.getDailyForecasts(locations))
+                .thenReturn(List.of(
+                        new BatchForecastResultDto<>(52.2297, 21.0122, List.of(new DailyForecastDto("2024-01-15", 1, 5.2, 12.8, 45.5)), null, null),
+                        new BatchForecastResultDto<>(50.0647, 19.945, null, "Error fetching weather data", null)
+                ));
+
+        mockMvc.perform(post("/api/forecast/daily/batch")
+                        .content("{\"locations\":[{\"latitude\":52.2297,\"longitude\":21.0122},{\"latitude\":50.0647,\"longitude\":19.945}]}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].forecast[0].date").value("2024-01-15"))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].forecast").doesNotExist())
+                .andExpect(jsonPath("$[1].error").value("Error fetching weather data"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"locations\":[]}",
+            "{\"locations\":[{\"latitude\":91.0,\"longitude\":21.0}]}",
+            "{\"locations\":[{\"latitude\":52.0}]}",
+            "not json"
+    })
+    void shouldReturnBadRequestWithInvalidBatch(String body) throws Exception {
+        mockMvc.perform(post("/api/forecast/summary/batch")
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldReturnServiceUnavailableAndCountUpstreamErrors() throws Exception {
+        when(weatherForecastService.getDailyForecast(52.2297, 21.0122))
+                .thenThrow(new WeatherApiException("Error fetching weather data"));
+
+        mockMvc.perform(get("/api/forecast/daily")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(content().string("Error fetching weather data"));
+
+        assertEquals(1.0, meterRegistry.counter("weather.errors", "type", "weather_api").count());
+    }
+
+    @Test
+    void shouldMarkStaleForecast() throws Exception {
+        when(weatherForecastService.getWeeklySummary(52.2297, 21.0122))
+                .thenReturn(forecast(new WeeklyForecastSummaryDto(1013.25, 25200.0, -2.5, 18.3, "Z opadami"), true));
+
+        mockMvc.perform(get("/api/forecast/summary")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Forecast-Stale", "true"))
+                .andExpect(jsonPath("$.summary").value("Z opadami"));
+    }
+
+    @Test
+    void shouldSetETagAndRemainingFreshnessAsMaxAge() throws Exception {
+        when(weatherForecastService.getDailyForecast(52.2297, 21.0122))
+                .thenReturn(forecast(List.of(new DailyForecastDto("2024-01-15", 1, 5.2, 12.8, 45.5)), false, "5223.2101-18d0c1b8c00"));
+
+        mockMvc.perform(get("/api/forecast/daily")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"5223.2101-18d0c1b8c00-json\""))
+                .andExpect(header().string("Cache-Control", "max-age=1200, public"));
+    }
+
+    @Test
+    void shouldReturnNotModifiedWithoutComputingForecast() throws Exception {
+        AtomicInteger computations = new AtomicInteger();
+        when(weatherForecastService.getDailyForecast(52.2297, 21.0122))
+                .thenReturn(new ForecastResult<>(() -> {
+                    computations.incrementAndGet();
+                    return List.of();
+                }, "5223.2101-18d0c1b8c00", FETCHED_AT, FETCHED_AT.plus(Duration.ofMinutes(30)), false));
+
+        mockMvc.perform(get("/api/forecast/daily")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122")
+                        .header("If-None-Match", "\"5223.2101-18d0c1b8c00-json\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"5223.2101-18d0c1b8c00-json\""))
+                .andExpect(content().string(""));
+
+        assertEquals(0, computations.get());
+    }
+
+    @Test
+    void shouldNotLetStaleForecastBeCached() throws Exception {
+        when(weatherForecastService.getWeeklySummary(52.2297, 21.0122))
+                .thenReturn(forecast(new WeeklyForecastSummaryDto(1013.25, 25200.0, -2.5, 18.3, "Z opadami"), true));
+
+        mockMvc.perform(get("/api/forecast/summary")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122")
+                        .header("If-None-Match", "\"other\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=0, public"));
+    }
+
+    private static List<DailyForecastDto> week() {
+        return IntStream.range(0, 7)
+                .mapToObj(i -> new DailyForecastDto("2024-01-1" + (5 + i % 5), i, 5.2, 12.8, 45.5))
+                .toList();
+    }
+
+    @Test
+    void shouldReturnCborWhenRequested() throws Exception {
+        when(weatherForecastService.getDailyForecast(52.2297, 21.0122)).thenReturn(forecast(week(), false, "5223.2101-18d0c1b8c00"));
+
+        byte[] body = mockMvc.perform(get("/api/forecast/daily")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122")
+                        .accept("application/cbor;q=1.0, application/json;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andExpect(header().string("ETag", "\"5223.2101-18d0c1b8c00-cbor\""))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode tree = new CBORMapper().readTree(body);
+        assertTrue(tree.get(0).isArray());
+        assertEquals("2024-01-15", tree.get(0).get(0).asText());
+        List<DailyForecastDto> decoded = CBORMapper.builder()
+                .addMixIn(DailyForecastDto.class, Positional.class)
+                .build()
+                .readValue(body, new TypeReference<>() {
+                });
+        assertEquals(week(), decoded);
+        assertTrue(body.length < new ObjectMapper().writeValueAsBytes(week()).length / 2);
+    }
+
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    private interface Positional {
+    }
+
+    @Test
+    void shouldGzipLargeBodiesWhenAccepted() throws Exception {
+        when(weatherForecastService.getDailyForecast(52.2297, 21.0122)).thenReturn(forecast(week(), false, "5223.2101-18d0c1b8c00"));
+
+        byte[] body = mockMvc.perform(get("/api/forecast/daily")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122")
+                        .header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("ETag", "\"5223.2101-18d0c1b8c00-json-gzip\""))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals(7, new ObjectMapper().readTree(gzip).size());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"gzip;q=0", "deflate, gzip; q=0.000", "identity", "*;q=0", "br, *;q=0.5, gzip;q=0"})
+    void shouldNotGzipWhenClientRefusesIt(String acceptEncoding) throws Exception {
+        when(weatherForecastService.getDailyForecast(52.2297, 21.0122)).thenReturn(forecast(week(), false, "5223.2101-18d0c1b8c00"));
+
+        mockMvc.perform(get("/api/forecast/daily")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122")
+                        .header("Accept-Encoding", acceptEncoding))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(header().string("ETag", "\"5223.2101-18d0c1b8c00-json\""));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"GZIP;q=0.5", "br, *", "deflate;q=1, *;q=0.1", "x-gzip"})
+    void shouldGzipWhenClientAcceptsItWithNonZeroQuality(String acceptEncoding) throws Exception {
+        when(weatherForecastService.getDailyForecast(52.2297, 21.0122)).thenReturn(forecast(week(), false, "5223.2101-18d0c1b8c00"));
+
+        mockMvc.perform(get("/api/forecast/daily")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122")
+                        .header("Accept-Encoding", acceptEncoding))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"));
+    }
+
+    @Test
+    void shouldNotTagSmallBodiesAsGzipped() throws Exception {
+        when(weatherForecastService.getWeeklySummary(52.2297, 21.0122))
+                .thenReturn(forecast(new WeeklyForecastSummaryDto(1013.25, 25200.0, -2.5, 18.3, "Z opadami"), false,
+                        "5223.2101-small"));
+
+        mockMvc.perform(get("/api/forecast/summary")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122")
+                        .header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(header().string("ETag", "\"5223.2101-small-json\""));
+    }
+
+    @Test
+    void shouldReturnNotModifiedToGzipClientsOnceBodyIsEncoded() throws Exception {
+        AtomicInteger computations = new AtomicInteger();
+        when(weatherForecastService.getDailyForecast(52.2297, 21.0122))
+                .thenReturn(new ForecastResult<>(() -> {
+                    computations.incrementAndGet();
+                    return week();
+                }, "5223.2101-gzip-304", FETCHED_AT, FETCHED_AT.plus(Duration.ofMinutes(30)), false));
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/forecast/daily")
+                            .param("latitude", "52.2297")
+                            .param("longitude", "21.0122")
+                            .header("Accept-Encoding", "gzip")
+                            .header("If-None-Match", "\"5223.2101-gzip-304-json-gzip\""))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string("ETag", "\"5223.2101-gzip-304-json-gzip\""));
+        }
+
+        assertEquals(1, computations.get());
+    }
+
+    @Test
+    void shouldEncodeEachForecastVersionOnce() throws Exception {
+        AtomicInteger computations = new AtomicInteger();
+        when(weatherForecastService.getWeeklySummary(52.2297, 21.0122))
+                .thenAnswer(invocation -> new ForecastResult<>(() -> {
+                    computations.incrementAndGet();
+                    return new WeeklyForecastSummaryDto(1013.25, 25200.0, -2.5, 18.3, "Z opadami");
+                }, "5223.2101-encode-once", FETCHED_AT, FETCHED_AT.plus(Duration.ofMinutes(30)), false));
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/forecast/summary")
+                            .param("latitude", "52.2297")
+                            .param("longitude", "21.0122"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.summary").value("Z opadami"));
+        }
+
+        assertEquals(1, computations.get());
+    }
+
+    @Test
+    void shouldReturnSolarYieldForPanelParameters() throws Exception {
+        when(solarYieldService.getSolarYield(52.2297, 21.0122, 4.0, 0.85, false))
+                .thenReturn(forecast(new SolarYieldDto(4.0, 0.85, 3.4, 3.4,
+                        List.of(new DailySolarYieldDto("2024-01-15", 3.4, 2.5, 310.0, null))), false));
+
+        mockMvc.perform(get("/api/forecast/solar")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122")
+                        .param("peakPower", "4.0")
+                        .param("performanceRatio", "0.85"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.peakPower").value(4.0))
+                .andExpect(jsonPath("$.days[0].date").value("2024-01-15"))
+                .andExpect(jsonPath("$.days[0].energy").value(3.4))
+                .andExpect(jsonPath("$.days[0].hours").doesNotExist());
+    }
+
+    @Test
+    void shouldKeepOnlyDefaultPanelSolarBodiesInTheirOwnCache() throws Exception {
+        SolarYieldDto solarYield = new SolarYieldDto(2.5, 0.8, 3.4, 3.4,
+                List.of(new DailySolarYieldDto("2024-01-15", 3.4, 2.5, 310.0, null)));
+        when(solarYieldService.getSolarYield(any(Double.class), any(Double.class), any(Double.class), any(Double.class), any(Boolean.class)))
+                .thenAnswer(invocation -> forecast(solarYield, false));
+        long forecastBytes = representationCache.size();
+        long solarBytes = solarRepresentationCache.size();
+
+        mockMvc.perform(get("/api/forecast/solar")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122")
+                        .param("peakPower", "4.123456"))
+                .andExpect(status().isOk());
+        assertEquals(solarBytes, solarRepresentationCache.size());
+
+        mockMvc.perform(get("/api/forecast/solar")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122"))
+                .andExpect(status().isOk());
+        assertTrue(solarRepresentationCache.size() > solarBytes);
+        assertEquals(forecastBytes, representationCache.size());
+    }
+
+    @Test
+    void shouldReturnBadRequestWithInvalidPanelParameters() throws Exception {
+        mockMvc.perform(get("/api/forecast/solar")
+                        .param("latitude", "52.2297")
+                        .param("longitude", "21.0122")
+                        .param("performanceRatio", "1.5"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Peak power must be between 0 and 1000 kWp, performance ratio must be between 0 and 1."));
+    }
+
+    @Test
+    void shouldOpenStreamForLocationPairs() throws Exception {
+        when(forecastStreamService.subscribe(any())).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/forecast/daily/stream")
+                        .param("latitude", "52.2297", "50.0647")
+                        .param("longitude", "21.0122", "19.945"))
+                .andExpect(request().asyncStarted());
+
+        verify(forecastStreamService).subscribe(List.of(new LocationDto(52.2297, 21.0122), new LocationDto(50.0647, 19.945)));
+    }
+
+    @Test
+    void shouldReturnBadRequestWhenStreamCoordinatesAreUnpaired() throws Exception {
+        mockMvc.perform(get("/api/forecast/daily/stream")
+                        .param("latitude", "52.2297", "50.0647")
+                        .param("longitude", "21.0122"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Both latitude and longitude are required."));
+
+        verifyNoInteractions(forecastStreamService);
+    }
+
+    @Test
+    void shouldReturnBadRequestWhenStreamFollowsTooManyLocations() throws Exception {
+        String[] coordinates = IntStream.range(0, 21).mapToObj(i -> "10." + i).toArray(String[]::new);
+
+        mockMvc.perform(get("/api/forecast/daily/stream")
+                        .param("latitude", coordinates)
+                        .param("longitude", coordinates))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("A stream can follow 1 to 20 locations."));
+    }
+
+    @Test
+    void shouldReportDistanceToServedGridPoint() throws Exception {
+        when(weatherForecastService.getDailyForecast(52.24, 21.01))
+                .thenReturn(new ForecastResult<>(List::of, "v" + VERSIONS.incrementAndGet(), FETCHED_AT,
+                        FETCHED_AT.plus(Duration.ofMinutes(30)), false, 1.1119));
+
+        mockMvc.perform(get("/api/forecast/daily")
+                        .param("latitude", "52.24")
+                        .param("longitude", "21.01"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Forecast-Resolution-Km", "1.11"));
+    }
 }
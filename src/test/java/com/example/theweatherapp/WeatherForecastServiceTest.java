@@ -1,25 +1,42 @@
 package com.example.theweatherapp;
 
+import com.example.theweatherapp.cache.ForecastCache;
+import com.example.theweatherapp.cache.ForecastStore;
+import com.example.theweatherapp.cache.GridCell;
+import com.example.theweatherapp.client.Bulkhead;
+import com.example.theweatherapp.client.CircuitBreaker;
+import com.example.theweatherapp.client.OpenMeteoClient;
+import com.example.theweatherapp.client.RateLimitBudget;
+import com.example.theweatherapp.dto.LocationDto;
 import com.example.theweatherapp.exception.WeatherApiException;
 import com.example.theweatherapp.model.DailyData;
 import com.example.theweatherapp.model.WeatherApiResponse;
 import com.example.theweatherapp.service.WeatherForecastService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,37 +45,63 @@ class WeatherForecastServiceTest {
     @Mock
     private RestTemplate restTemplate;
 
-    @InjectMocks
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-15T12:00:00Z"));
+
     private WeatherForecastService weatherForecastService;
 
     @BeforeEach
     void setUp() {
-        ReflectionTestUtils.setField(weatherForecastService, "apiUrl", "https://api.open-meteo.com/v1/forecast");
+        createService(RateLimitBudget.unlimited());
+    }
+
+    private void createService(RateLimitBudget rateLimitBudget) {
+        ForecastCache forecastCache = new ForecastCache(Duration.ofMinutes(30), 100, Duration.ofSeconds(10), ForecastStore.NONE, clock);
+        OpenMeteoClient openMeteoClient = new OpenMeteoClient(restTemplate, objectMapper, new SimpleMeterRegistry(),
+                new CircuitBreaker(5, Duration.ofSeconds(30), clock), new Bulkhead(10, Duration.ofSeconds(1)),
+                rateLimitBudget);
+        ReflectionTestUtils.setField(openMeteoClient, "apiUrl", "https://api.open-meteo.com/v1/forecast");
+        weatherForecastService = new WeatherForecastService(openMeteoClient, forecastCache, Runnable::run);
+        ReflectionTestUtils.setField(weatherForecastService, "gridSize", 0.01);
+        ReflectionTestUtils.setField(weatherForecastService, "maxLocationsPerRequest", 2);
+        ReflectionTestUtils.setField(weatherForecastService, "staleWhileRevalidate", Duration.ZERO);
+        ReflectionTestUtils.setField(weatherForecastService, "staleIfError", Duration.ofHours(6));
     }
 
     private WeatherApiResponse mockValidResponse() {
         DailyData dailyData = new DailyData();
 
-        List<String> dates = IntStream.range(0, 7)
+        String[] dates = IntStream.range(0, 7)
                 .mapToObj(i -> LocalDate.now().plusDays(i).toString())
-                .toList();
+                .toArray(String[]::new);
 
         dailyData.setDates(dates);
-        dailyData.setWeatherCodes(Arrays.asList(0, 1, 2, 61, 63, 80, 95));
-        dailyData.setTempMin(Arrays.asList(10.0, 11.0, 9.5, 8.0, 7.0, 12.0, 13.0));
-        dailyData.setTempMax(Arrays.asList(20.0, 19.0, 18.0, 21.0, 23.0, 22.0, 24.0));
-        dailyData.setSunshineDuration(Arrays.asList(3600.0, 1800.0, 0.0, 5400.0, 3600.0, 7200.0, 3600.0));
-        dailyData.setPressure(Arrays.asList(1012.0, 1010.0, 1008.0, 1005.0, 1007.0, 1009.0, 1011.0));
+        dailyData.setWeatherCodes(new int[]{0, 1, 2, 61, 63, 80, 95});
+        dailyData.setTempMin(new double[]{10.0, 11.0, 9.5, 8.0, 7.0, 12.0, 13.0});
+        dailyData.setTempMax(new double[]{20.0, 19.0, 18.0, 21.0, 23.0, 22.0, 24.0});
+        dailyData.setSunshineDuration(new double[]{3600.0, 1800.0, 0.0, 5400.0, 3600.0, 7200.0, 3600.0});
+        dailyData.setPressure(new double[]{1012.0, 1010.0, 1008.0, 1005.0, 1007.0, 1009.0, 1011.0});
 
         return new WeatherApiResponse(dailyData);
     }
 
+    private byte[] json(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     @Test
     void shouldReturnValidDailyForecasts() {
-        when(restTemplate.getForObject(anyString(), eq(WeatherApiResponse.class)))
-                .thenReturn(mockValidResponse());
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenReturn(json(mockValidResponse()));
 
-        var forecasts = weatherForecastService.getDailyForecast(50.0, 20.0);
+        var forecasts = weatherForecastService.getDailyForecast(50.0, 20.0).forecast();
 
         assertEquals(7, forecasts.size());
         assertEquals(10.0, forecasts.getFirst().tempMin());
@@ -68,10 +111,10 @@ class WeatherForecastServiceTest {
 
     @Test
     void shouldReturnValidWeeklySummary() {
-        when(restTemplate.getForObject(anyString(), eq(WeatherApiResponse.class)))
-                .thenReturn(mockValidResponse());
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenReturn(json(mockValidResponse()));
 
-        var summary = weatherForecastService.getWeeklySummary(50.0, 20.0);
+        var summary = weatherForecastService.getWeeklySummary(50.0, 20.0).forecast();
 
         assertEquals(1008.9, summary.averagePressure()); // Rounded
         assertEquals(3600, summary.averageSunshineSeconds()); // Rounded
@@ -81,21 +124,234 @@ class WeatherForecastServiceTest {
     }
     @Test
     void shouldThrowIfWeatherResponseIsNull() {
-        when(restTemplate.getForObject(anyString(), eq(WeatherApiResponse.class)))
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
                 .thenReturn(null);
 
         assertThrows(WeatherApiException.class, () -> weatherForecastService.getDailyForecast(50.0, 20.0));
     }
+    @Test
+    void shouldKeepCircuitClosedWhenUpstreamReturnsInvalidData() {
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenReturn("not json".getBytes(), null, "[1]".getBytes(), "not json".getBytes(), null, "[1]".getBytes())
+                .thenReturn(json(mockValidResponse()));
+
+        for (int i = 0; i < 6; i++) {
+            double lat = 50.0 + i;
+            assertThrows(RuntimeException.class, () -> weatherForecastService.getDailyForecast(lat, 20.0));
+        }
+
+        assertEquals(7, weatherForecastService.getDailyForecast(60.0, 20.0).forecast().size());
+    }
+
     @Test
     void shouldHandleNegativeSunshine() {
         var modified = mockValidResponse();
-        modified.dailyData().getSunshineDuration().set(0, -100.0);
+        modified.dailyData().getSunshineDuration()[0] = -100.0;
 
-        when(restTemplate.getForObject(anyString(), eq(WeatherApiResponse.class)))
-                .thenReturn(modified);
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenReturn(json(modified));
 
-        var forecasts = weatherForecastService.getDailyForecast(50.0, 20.0);
+        var forecasts = weatherForecastService.getDailyForecast(50.0, 20.0).forecast();
 
         assertEquals(0.0, forecasts.getFirst().estimatedGeneratedEnergy());
     }
+
+    @Test
+    void shouldShareOneUpstreamFetchWithinGridCell() {
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenReturn(json(mockValidResponse()));
+
+        weatherForecastService.getDailyForecast(50.0012, 20.0041);
+        weatherForecastService.getWeeklySummary(49.9981, 19.9987);
+
+        verify(restTemplate, times(1)).getForObject(anyString(), eq(byte[].class));
+    }
+
+    @Test
+    void shouldFetchBatchInChunksAndReuseCachedCells() {
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenReturn(json(mockValidResponse()));
+        when(restTemplate.getForObject(contains("latitude=51.0000,52.0000"), eq(byte[].class)))
+                .thenReturn(json(List.of(mockValidResponse(), mockValidResponse())));
+        weatherForecastService.getDailyForecast(50.0, 20.0);
+
+        var results = weatherForecastService.getDailyForecasts(List.of(
+                new LocationDto(50.0, 20.0),
+                new LocationDto(51.0, 20.0),
+                new LocationDto(52.0, 20.0),
+                new LocationDto(53.0, 20.0)
+        ));
+
+        assertEquals(4, results.size());
+        assertEquals(7, results.get(0).forecast().size());
+        assertEquals(7, results.get(1).forecast().size());
+        assertEquals(7, results.get(2).forecast().size());
+        assertEquals(7, results.get(3).forecast().size());
+        verify(restTemplate, times(1)).getForObject(contains("latitude=51.0000,52.0000"), eq(byte[].class));
+        verify(restTemplate, times(3)).getForObject(anyString(), eq(byte[].class));
+    }
+
+    @Test
+    void shouldFormatCoordinatesIndependentlyOfDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("pl-PL"));
+        try {
+            when(restTemplate.getForObject(contains("latitude=51.0000,52.0000&longitude=20.0000,20.0000"), eq(byte[].class)))
+                    .thenReturn(json(List.of(mockValidResponse(), mockValidResponse())));
+
+            var results = weatherForecastService.getDailyForecasts(List.of(
+                    new LocationDto(51.0, 20.0),
+                    new LocationDto(52.0, 20.0)
+            ));
+
+            assertEquals(7, results.get(0).forecast().size());
+            assertEquals(7, results.get(1).forecast().size());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    void shouldReportPerLocationErrorsInBatch() {
+        WeatherApiResponse invalid = new WeatherApiResponse(null);
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenReturn(json(List.of(mockValidResponse(), invalid)));
+
+        var results = weatherForecastService.getWeeklySummaries(List.of(
+                new LocationDto(50.0, 20.0),
+                new LocationDto(51.0, 20.0)
+        ));
+
+        assertEquals("Z opadami", results.get(0).forecast().summary());
+        assertNull(results.get(0).error());
+        assertNull(results.get(1).forecast());
+        assertEquals("Weather response is missing daily data", results.get(1).error());
+    }
+
+    @Test
+    void shouldReportPerLocationErrorsWhenOneChunkFails() {
+        when(restTemplate.getForObject(contains("latitude=50.0000,51.0000"), eq(byte[].class)))
+                .thenReturn("{not json".getBytes());
+        when(restTemplate.getForObject(contains("latitude=52.0000,53.0000"), eq(byte[].class)))
+                .thenReturn(json(List.of(mockValidResponse(), mockValidResponse())));
+
+        var results = weatherForecastService.getDailyForecasts(List.of(
+                new LocationDto(50.0, 20.0),
+                new LocationDto(51.0, 20.0),
+                new LocationDto(52.0, 20.0),
+                new LocationDto(53.0, 20.0)
+        ));
+
+        assertNull(results.get(0).forecast());
+        assertNotNull(results.get(0).error());
+        assertNull(results.get(1).forecast());
+        assertEquals(7, results.get(2).forecast().size());
+        assertEquals(7, results.get(3).forecast().size());
+    }
+
+    @Test
+    void shouldReportGenericErrorWhenChunkFailsUnexpectedly() {
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenThrow(new IllegalStateException("Connection pool shut down"));
+
+        var results = weatherForecastService.getWeeklySummaries(List.of(
+                new LocationDto(50.0, 20.0),
+                new LocationDto(51.0, 20.0)
+        ));
+
+        assertEquals(2, results.size());
+        assertEquals("Error fetching weather data", results.get(0).error());
+        assertEquals("Error fetching weather data", results.get(1).error());
+    }
+
+    @Test
+    void shouldServeStaleForecastWhenUpstreamFails() {
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenReturn(json(mockValidResponse()))
+                .thenThrow(new ResourceAccessException("Read timed out"));
+        weatherForecastService.getDailyForecast(50.0, 20.0);
+        clock.advance(Duration.ofMinutes(45));
+
+        var result = weatherForecastService.getDailyForecast(50.0, 20.0);
+
+        assertTrue(result.stale());
+        assertEquals(7, result.forecast().size());
+        assertEquals(Instant.parse("2024-01-15T12:00:00Z"), result.fetchedAt());
+    }
+
+    @Test
+    void shouldFailWhenLastKnownForecastIsTooOld() {
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenReturn(json(mockValidResponse()))
+                .thenThrow(new ResourceAccessException("Read timed out"));
+        weatherForecastService.getDailyForecast(50.0, 20.0);
+        clock.advance(Duration.ofHours(7));
+
+        assertThrows(WeatherApiException.class, () -> weatherForecastService.getDailyForecast(50.0, 20.0));
+    }
+
+    @Test
+    void shouldServeStaleForecastWhileRevalidating() {
+        ReflectionTestUtils.setField(weatherForecastService, "staleWhileRevalidate", Duration.ofMinutes(2));
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenReturn(json(mockValidResponse()));
+        weatherForecastService.getWeeklySummary(50.0, 20.0);
+        clock.advance(Duration.ofMinutes(31));
+
+        assertTrue(weatherForecastService.getWeeklySummary(50.0, 20.0).stale());
+        assertFalse(weatherForecastService.getWeeklySummary(50.0, 20.0).stale());
+        verify(restTemplate, times(2)).getForObject(anyString(), eq(byte[].class));
+    }
+
+    @Test
+    void shouldMarkStaleBatchResultsWhenUpstreamFails() {
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenReturn(json(mockValidResponse()))
+                .thenThrow(new ResourceAccessException("Read timed out"));
+        weatherForecastService.getDailyForecast(50.0, 20.0);
+        clock.advance(Duration.ofMinutes(45));
+
+        var results = weatherForecastService.getDailyForecasts(List.of(
+                new LocationDto(50.0, 20.0),
+                new LocationDto(51.0, 20.0)
+        ));
+
+        assertEquals(Boolean.TRUE, results.get(0).stale());
+        assertEquals(7, results.get(0).forecast().size());
+        assertNull(results.get(1).stale());
+        assertEquals("Error fetching weather data", results.get(1).error());
+    }
+
+    @Test
+    void shouldSkipBackgroundRefreshAndServeStaleWhenBudgetRunsOut() {
+        createService(new RateLimitBudget(List.of(new RateLimitBudget.Quota(4, Duration.ofDays(1))),
+                0.5, 0.5, Duration.ZERO, clock));
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenReturn(json(mockValidResponse()));
+        weatherForecastService.getDailyForecast(50.0, 20.0);
+
+        assertThrows(WeatherApiException.class, () -> weatherForecastService.refresh(GridCell.of(50.0, 20.0, 0.01)));
+        clock.advance(Duration.ofMinutes(45));
+        assertFalse(weatherForecastService.getDailyForecast(50.0, 20.0).stale());
+        clock.advance(Duration.ofMinutes(45));
+
+        assertTrue(weatherForecastService.getDailyForecast(50.0, 20.0).stale());
+        verify(restTemplate, times(2)).getForObject(anyString(), eq(byte[].class));
+    }
+
+    @Test
+    void shouldServeNearbyCachedForecastWithItsDistance() {
+        ReflectionTestUtils.setField(weatherForecastService, "nearbyRadiusKm", 3.0);
+        when(restTemplate.getForObject(anyString(), eq(byte[].class)))
+                .thenReturn(json(mockValidResponse()));
+        var exact = weatherForecastService.getDailyForecast(50.0, 20.0);
+
+        var nearby = weatherForecastService.getDailyForecast(50.02, 20.0);
+
+        assertEquals(exact.version(), nearby.version());
+        assertEquals(0.0, exact.distanceKm(), 1e-9);
+        assertEquals(2.22, nearby.distanceKm(), 0.01);
+        assertNotEquals(exact.version(), weatherForecastService.getDailyForecast(50.05, 20.0).version());
+        verify(restTemplate, times(2)).getForObject(anyString(), eq(byte[].class));
+    }
 }
@@ -0,0 +1,246 @@
+package com.example.theweatherapp.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the Open-Meteo forecast API. Serves the recorded payload from
+ * {@code open-meteo/daily.json}, or {@code open-meteo/hourly.json} for hourly requests, for every
+ * requested location, as a JSON array when the request asks for several comma-separated coordinates.
+ * <p>
+ * A {@link Behavior} injects latency, errors and slow-drip responses; it can be swapped while the
+ * stub runs, e.g. to simulate an outage in the middle of a load test. {@link #main} runs the stub
+ * on its own, for pointing a separately started application at it.
+ */
+public class OpenMeteoStubServer implements AutoCloseable {
+
+    private static final String PATH = "/v1/forecast";
+    private static final int SLOW_DRIP_CHUNKS = 16;
+    private static final byte[] ERROR_BODY = "{\"error\":true,\"reason\":\"Injected failure\"}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * How the stub misbehaves. Latency follows a log-normal distribution with the given median and
+     * 99th percentile, or is fixed at the median when the percentile is not above it. A share of
+     * requests ({@code errorRate}) is answered with {@code errorStatus}, and another share
+     * ({@code slowDripRate}) gets its body in small chunks spread over {@code slowDripDuration}.
+     */
+    public record Behavior(Duration latencyMedian,
+                           Duration latencyP99,
+                           double errorRate,
+                           int errorStatus,
+                           double slowDripRate,
+                           Duration slowDripDuration) {
+
+        public static final Behavior NONE = new Behavior(Duration.ZERO, Duration.ZERO, 0, 503, 0, Duration.ZERO);
+
+        /**
+         * Reads {@code latency-median}, {@code latency-p99}, {@code error-rate}, {@code error-status},
+         * {@code slow-drip-rate} and {@code slow-drip-duration}, falling back to {@link #NONE} for
+         * missing ones. Durations are ISO-8601, e.g. {@code PT0.08S}.
+         */
+        public static Behavior from(Map<String, String> settings) {
+            return new Behavior(
+                    Duration.parse(settings.getOrDefault("latency-median", NONE.latencyMedian().toString())),
+                    Duration.parse(settings.getOrDefault("latency-p99", NONE.latencyP99().toString())),
+                    Double.parseDouble(settings.getOrDefault("error-rate", String.valueOf(NONE.errorRate()))),
+                    Integer.parseInt(settings.getOrDefault("error-status", String.valueOf(NONE.errorStatus()))),
+                    Double.parseDouble(settings.getOrDefault("slow-drip-rate", String.valueOf(NONE.slowDripRate()))),
+                    Duration.parse(settings.getOrDefault("slow-drip-duration", NONE.slowDripDuration().toString())));
+        }
+
+        long sampleLatencyNanos(ThreadLocalRandom random) {
+            long median = latencyMedian.toNanos();
+            if (median <= 0 || latencyP99.compareTo(latencyMedian) <= 0) {
+                return median;
+            }
+            // 2.326 is the standard normal quantile of the 99th percentile
+            double sigma = Math.log((double) latencyP99.toNanos() / median) / 2.326;
+            return (long) (median * Math.exp(sigma * random.nextGaussian()));
+        }
+    }
+
+    private final HttpServer server;
+    private final byte[] payload;
+    private final byte[] hourlyPayload;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger injectedErrorCount = new AtomicInteger();
+    private volatile Behavior behavior;
+
+    private OpenMeteoStubServer(int port, Behavior behavior) throws IOException {
+        this.payload = loadPayload("/open-meteo/daily.json");
+        this.hourlyPayload = loadPayload("/open-meteo/hourly.json");
+        this.behavior = behavior;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.server.createContext(PATH, this::handle);
+        // Platform threads, so the stub keeps answering when an application in the same JVM pins
+        // every virtual thread carrier
+        this.server.setExecutor(Executors.newCachedThreadPool());
+    }
+
+    public static OpenMeteoStubServer start(int port, Behavior behavior) throws IOException {
+        OpenMeteoStubServer stub = new OpenMeteoStubServer(port, behavior);
+        stub.server.start();
+        return stub;
+    }
+
+    public static OpenMeteoStubServer start(int port) throws IOException {
+        return start(port, Behavior.NONE);
+    }
+
+    public static OpenMeteoStubServer start() throws IOException {
+        return start(0);
+    }
+
+    /**
+     * Runs the stub until the process is stopped. Arguments are {@code --port=<port>} (default
+     * 8089) and the {@link Behavior#from} settings, e.g. {@code --latency-median=PT0.08S --error-rate=0.05}.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> settings = parseArguments(args);
+        try (OpenMeteoStubServer stub = start(Integer.parseInt(settings.getOrDefault("port", "8089")), Behavior.from(settings))) {
+            System.out.println("Open-Meteo stub listening on " + stub.url() + " with " + stub.behavior());
+            Thread.currentThread().join();
+        }
+    }
+
+    /**
+     * Turns {@code --key=value} arguments into a map; other arguments are rejected.
+     */
+    public static Map<String, String> parseArguments(String[] args) {
+        Map<String, String> settings = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --key=value, got '" + arg + "'");
+            }
+            settings.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return settings;
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+    }
+
+    public int requestCount() {
+        return requestCount.get();
+    }
+
+    public int injectedErrorCount() {
+        return injectedErrorCount.get();
+    }
+
+    public Behavior behavior() {
+        return behavior;
+    }
+
+    public void setBehavior(Behavior behavior) {
+        this.behavior = behavior;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        Behavior current = behavior;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try (exchange) {
+            sleep(current.sampleLatencyNanos(random));
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            if (random.nextDouble() < current.errorRate()) {
+                injectedErrorCount.incrementAndGet();
+                exchange.sendResponseHeaders(current.errorStatus(), ERROR_BODY.length);
+                exchange.getResponseBody().write(ERROR_BODY);
+                return;
+            }
+            String query = exchange.getRequestURI().getRawQuery();
+            boolean hourly = query != null && query.contains("hourly=");
+            byte[] body = responseBody(hourly ? hourlyPayload : payload, locationCount(query));
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            if (random.nextDouble() < current.slowDripRate()) {
+                drip(out, body, current.slowDripDuration());
+            } else {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the body in small flushed chunks with pauses in between, so every single read on the
+     * client side is quick but the whole response takes {@code duration}.
+     */
+    private static void drip(OutputStream out, byte[] body, Duration duration) throws IOException, InterruptedException {
+        int chunk = Math.max(1, (body.length + SLOW_DRIP_CHUNKS - 1) / SLOW_DRIP_CHUNKS);
+        long pauseNanos = duration.toNanos() / SLOW_DRIP_CHUNKS;
+        for (int offset = 0; offset < body.length; offset += chunk) {
+            out.write(body, offset, Math.min(chunk, body.length - offset));
+            out.flush();
+            sleep(pauseNanos);
+        }
+    }
+
+    private static void sleep(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            Thread.sleep(Duration.ofNanos(nanos));
+        }
+    }
+
+    private static byte[] responseBody(byte[] payload, int locations) {
+        if (locations == 1) {
+            return payload;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream(payload.length * locations + locations + 1);
+        body.write('[');
+        for (int i = 0; i < locations; i++) {
+            if (i > 0) {
+                body.write(',');
+            }
+            body.writeBytes(payload);
+        }
+        body.write(']');
+        return body.toByteArray();
+    }
+
+    private static int locationCount(String query) {
+        if (query == null) {
+            return 1;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("latitude=")) {
+                return parameter.split("%2C|,", -1).length;
+            }
+        }
+        return 1;
+    }
+
+    private static byte[] loadPayload(String resource) {
+        try (InputStream in = OpenMeteoStubServer.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing " + resource + " test resource");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}